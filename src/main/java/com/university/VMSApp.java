@@ -1,6 +1,7 @@
 package com.university;
 
 import atlantafx.base.theme.NordLight;
+import com.university.model.DatabaseService;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
@@ -34,4 +35,10 @@ public class VMSApp extends Application {
         stage.setScene(scene);
         stage.show();
     }
+
+    @Override
+    public void stop() {
+        // Write any changes still waiting for the background group commit
+        DatabaseService.getInstance().close();
+    }
 }
\ No newline at end of file
@@ -71,9 +71,38 @@ public class AdminDashboardController {
     // ==========================
     // DATA & STATE
     // ==========================
-    private DatabaseService databaseService = new DatabaseService();
+    private DatabaseService databaseService = DatabaseService.getInstance();
     private User selectedUserForUpdate = null; // Tracks user selection for updates
 
+    // ==========================
+    // CHANGE LISTENERS (tables follow the shared DatabaseService instead of reloading)
+    // ==========================
+    private final DataListener<User> userListener = new DataListener<>() {
+        @Override public void added(User user) {
+            userTableView.getItems().add(user);
+            if (user instanceof Teacher) teacherSelector.getItems().add(user.getFullName());
+        }
+        @Override public void updated(User oldUser, User newUser) {
+            int index = userTableView.getItems().indexOf(oldUser);
+            if (index != -1) userTableView.getItems().set(index, newUser);
+            if (oldUser instanceof Teacher || newUser instanceof Teacher) loadTeachersIntoSelector();
+        }
+        @Override public void removed(User user) {
+            userTableView.getItems().remove(user);
+            if (user instanceof Teacher) teacherSelector.getItems().remove(user.getFullName());
+        }
+    };
+
+    private final DataListener<Course> courseListener = new DataListener<>() {
+        @Override public void added(Course course) { courseListView.getItems().add(course); }
+        @Override public void removed(Course course) { courseListView.getItems().remove(course); }
+    };
+
+    private final DataListener<RoutineSlot> routineListener = new DataListener<>() {
+        @Override public void added(RoutineSlot slot) { allRoutineTable.getItems().add(slot); }
+        @Override public void removed(RoutineSlot slot) { allRoutineTable.getItems().remove(slot); }
+    };
+
     @FXML
     public void initialize() {
         // --- Tab 1 Initialization ---
@@ -108,6 +137,10 @@ public class AdminDashboardController {
         loadTeachersIntoSelector();
         refreshCourseList();
         refreshRoutineList();
+
+        databaseService.addUserListener(userListener);
+        databaseService.addCourseListener(courseListener);
+        databaseService.addRoutineListener(routineListener);
     }
 
     // ==========================
@@ -137,16 +170,24 @@ public class AdminDashboardController {
 
         if (selectedUserForUpdate != null) {
             // Update existing user
-            databaseService.updateUser(selectedUserForUpdate, userObj);
+            if (!databaseService.updateUser(selectedUserForUpdate, userObj)) {
+                User owner = databaseService.findUser(userId);
+                statusLabel.setText(owner != null && owner != selectedUserForUpdate
+                        ? "User ID already exists!" : "Could not save the user!");
+                return;
+            }
             statusLabel.setText("User Updated!");
         } else {
             // Create new user
-            databaseService.addUser(userObj);
+            if (!databaseService.addUser(userObj)) {
+                statusLabel.setText(databaseService.findUser(userId) != null
+                        ? "User ID already exists!" : "Could not save the user!");
+                return;
+            }
             statusLabel.setText("User Created!");
         }
 
-        loadUserData();
-        loadTeachersIntoSelector(); // Refresh teacher list for routine tab
+        // Table and teacher list are updated by userListener
         onClearUserSelection(); // Reset form
     }
 
@@ -160,8 +201,6 @@ public class AdminDashboardController {
 
         if (confirmAction("Delete User", "Are you sure you want to delete " + selected.getFullName() + "?")) {
             databaseService.deleteUser(selected);
-            loadUserData();
-            loadTeachersIntoSelector();
             onClearUserSelection();
         }
     }
@@ -211,9 +250,12 @@ public class AdminDashboardController {
         try {
             double credits = Double.parseDouble(creditStr);
             Course newCourse = new Course(code, title, credits);
-            databaseService.addCourse(newCourse);
+            if (!databaseService.addCourse(newCourse)) {
+                showAlert("Error", databaseService.findCourse(code) != null
+                        ? "Course code already exists." : "Could not save the course.");
+                return;
+            }
 
-            refreshCourseList();
             clearCourseFields();
         } catch (NumberFormatException e) {
             showAlert("Error", "Credits must be a number.");
@@ -227,7 +269,6 @@ public class AdminDashboardController {
 
         if (confirmAction("Delete Course", "Delete " + selected.getCourseCode() + "?")) {
             databaseService.deleteCourse(selected);
-            refreshCourseList();
         }
     }
 
@@ -249,7 +290,6 @@ public class AdminDashboardController {
         databaseService.addRoutineSlot(newSlot);
 
         showAlert("Success", "Routine Slot Added!");
-        refreshRoutineList();
     }
 
     @FXML
@@ -262,7 +302,6 @@ public class AdminDashboardController {
 
         if (confirmAction("Delete Slot", "Remove " + selected.getCourse().getCourseCode() + " class?")) {
             databaseService.deleteRoutine(selected);
-            refreshRoutineList();
         }
     }
 
@@ -327,6 +366,10 @@ public class AdminDashboardController {
     private void onLogoutButtonClick() {
         try {
             // Admin doesn't have a chat socket, so no need to close it.
+            databaseService.removeUserListener(userListener);
+            databaseService.removeCourseListener(courseListener);
+            databaseService.removeRoutineListener(routineListener);
+            databaseService.flush(); // write this session's changes before leaving
 
             // Load Login Scene
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/university/view/Login.fxml"));
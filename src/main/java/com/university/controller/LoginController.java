@@ -31,7 +31,7 @@ public class LoginController {
     // ==========================
     // DATA & SERVICES
     // ==========================
-    private DatabaseService databaseService = new DatabaseService();
+    private DatabaseService databaseService = DatabaseService.getInstance();
 
     @FXML
     public void initialize() {
@@ -69,15 +69,14 @@ public class LoginController {
         }
     }
 
-    // Helper method to validate user credentials
+    // Helper method to validate user credentials (primary-key lookup, no list scan)
     private User validateLogin(String userId, String password, String role) {
-        for (User user : databaseService.getUserList()) {
-            if (user.getUserId().equals(userId) &&
-                    user.validatePassword(password) &&
-                    user.getRole().equals(role))
-            {
-                return user;
-            }
+        User user = databaseService.findUser(userId);
+        if (user != null &&
+                user.validatePassword(password) &&
+                user.getRole().equals(role))
+        {
+            return user;
         }
         return null;
     }
@@ -1,14 +1,18 @@
 package com.university.controller;
 
+import com.university.model.DataListener;
 import com.university.model.DatabaseService;
 import com.university.model.RoutineSlot;
 import com.university.model.Student;
 import com.university.model.Notice;
+import com.university.server.ChatClient;
+import com.university.server.ChatFrame;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.FlowPane;
@@ -18,15 +22,14 @@ import javafx.scene.text.Text;
 import javafx.scene.text.TextFlow;
 import javafx.stage.Stage;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.Socket;
 import java.time.LocalDate;
 import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class StudentDashboardController {
@@ -60,16 +63,46 @@ public class StudentDashboardController {
     // DATA & SERVICES
     // ==========================
     private Student currentStudent;
-    private DatabaseService databaseService = new DatabaseService();
+    private DatabaseService databaseService = DatabaseService.getInstance();
+
+    // Keep this dashboard in step with changes made elsewhere (removed on logout)
+    private final DataListener<Notice> noticeListener = new DataListener<>() {
+        @Override public void added(Notice notice) {
+            if (!isForMySection(notice)) return;
+            if (noticeContainer.getChildren().size() == 1
+                    && noticeContainer.getChildren().get(0).getUserData() == null) {
+                noticeContainer.getChildren().clear(); // drop the empty state
+            }
+            noticeContainer.getChildren().add(0, createNoticeCard(notice));
+            if (noticeContainer.getChildren().size() > NOTICE_FEED_SIZE) {
+                noticeContainer.getChildren().remove(NOTICE_FEED_SIZE);
+            }
+        }
+        @Override public void removed(Notice notice) {
+            noticeContainer.getChildren().removeIf(card -> card.getUserData() == notice);
+            if (noticeContainer.getChildren().isEmpty()) showNoNotices();
+        }
+    };
+
+    private final DataListener<RoutineSlot> routineListener = new DataListener<>() {
+        @Override public void added(RoutineSlot slot) { refreshIfMine(slot); }
+        @Override public void removed(RoutineSlot slot) { refreshIfMine(slot); }
+
+        // Redraws from the section index, so this costs only this section's slots
+        private void refreshIfMine(RoutineSlot slot) {
+            if (slot.getSection().equals(currentStudent.getBatch())) loadRoutine(currentStudent.getBatch());
+        }
+    };
 
     // ==========================
     // NETWORKING VARIABLES
     // ==========================
-    private Socket socket;
-    private BufferedReader reader;
-    private PrintWriter writer;
+    private volatile ChatClient chatClient;
+    private final Map<String, List<Node>> chatRooms = new HashMap<>(); // messages per room, FX thread only
+    private volatile String currentChatRoom;
     private static final String SERVER_ADDRESS = "localhost";
     private static final int SERVER_PORT = 12345;
+    private static final int NOTICE_FEED_SIZE = 100;
     private volatile boolean isRunning = false;
 
     @FXML
@@ -87,6 +120,9 @@ public class StudentDashboardController {
         loadRoutine(student.getBatch());
         loadChatGroups(student.getBatch());
         loadNotices(student.getBatch());
+
+        databaseService.addNoticeListener(noticeListener);
+        databaseService.addRoutineListener(routineListener);
     }
 
     // ==========================
@@ -102,58 +138,69 @@ public class StudentDashboardController {
     private void loadNotices(String studentSection) {
         noticeContainer.getChildren().clear();
 
-        // 1. Filter notices by section or ALL
-        List<Notice> relevantNotices = databaseService.getNoticeList().stream()
-                .filter(n -> n.getTargetSection().equals(studentSection) || n.getTargetSection().equals("ALL SECTIONS"))
-                .collect(Collectors.toList());
+        // 1. Latest notices for this section or ALL (newest first, from the notice feed index)
+        List<Notice> relevantNotices = databaseService.getLatestNoticesForSection(studentSection, NOTICE_FEED_SIZE);
 
         // 2. Empty state
         if (relevantNotices.isEmpty()) {
-            VBox emptyState = new VBox(10);
-            emptyState.setAlignment(Pos.CENTER);
-            emptyState.setPadding(new javafx.geometry.Insets(50));
-            Label titleLabel = new Label("No new notices right now.");
-            titleLabel.setStyle("-fx-font-size: 18px; -fx-text-fill: #999;");
-            emptyState.getChildren().add(titleLabel);
-            noticeContainer.getChildren().add(emptyState);
+            showNoNotices();
             return;
         }
 
-        // 3. Generate notice cards (Reverse order for latest first)
-        for (int i = relevantNotices.size() - 1; i >= 0; i--) {
-            Notice notice = relevantNotices.get(i);
+        // 3. Generate notice cards (already latest first)
+        for (Notice notice : relevantNotices) {
+            noticeContainer.getChildren().add(createNoticeCard(notice));
+        }
+    }
+
+    private boolean isForMySection(Notice notice) {
+        return notice.getTargetSection().equals(currentStudent.getBatch())
+                || notice.getTargetSection().equals("ALL SECTIONS");
+    }
 
-            VBox card = new VBox();
-            card.getStyleClass().add("notice-card");
+    private void showNoNotices() {
+        VBox emptyState = new VBox(10);
+        emptyState.setAlignment(Pos.CENTER);
+        emptyState.setPadding(new javafx.geometry.Insets(50));
+        Label titleLabel = new Label("No new notices right now.");
+        titleLabel.setStyle("-fx-font-size: 18px; -fx-text-fill: #999;");
+        emptyState.getChildren().add(titleLabel);
+        noticeContainer.getChildren().add(emptyState);
+    }
 
-            HBox header = new HBox(10);
-            header.setAlignment(Pos.CENTER_LEFT);
+    // The card keeps its notice as user data so a deleted notice's card can be found
+    private VBox createNoticeCard(Notice notice) {
+        VBox card = new VBox();
+        card.setUserData(notice);
+        card.getStyleClass().add("notice-card");
 
-            Label titleLbl = new Label(notice.getTitle());
-            titleLbl.getStyleClass().add("notice-title");
-            HBox.setHgrow(titleLbl, javafx.scene.layout.Priority.ALWAYS);
-            titleLbl.setMaxWidth(Double.MAX_VALUE);
+        HBox header = new HBox(10);
+        header.setAlignment(Pos.CENTER_LEFT);
 
-            Label badgeLbl = new Label(notice.getTargetSection());
-            badgeLbl.getStyleClass().add("notice-badge");
+        Label titleLbl = new Label(notice.getTitle());
+        titleLbl.getStyleClass().add("notice-title");
+        HBox.setHgrow(titleLbl, javafx.scene.layout.Priority.ALWAYS);
+        titleLbl.setMaxWidth(Double.MAX_VALUE);
 
-            header.getChildren().addAll(titleLbl, badgeLbl);
+        Label badgeLbl = new Label(notice.getTargetSection());
+        badgeLbl.getStyleClass().add("notice-badge");
 
-            Label contentLbl = new Label(notice.getContent());
-            contentLbl.getStyleClass().add("notice-content");
-            contentLbl.setWrapText(true);
+        header.getChildren().addAll(titleLbl, badgeLbl);
 
-            HBox footer = new HBox(15);
-            footer.getStyleClass().add("notice-footer");
+        Label contentLbl = new Label(notice.getContent());
+        contentLbl.getStyleClass().add("notice-content");
+        contentLbl.setWrapText(true);
 
-            Label senderLbl = new Label("✍ " + notice.getSenderName());
-            Label timeLbl = new Label("🕒 " + notice.getTimestamp());
+        HBox footer = new HBox(15);
+        footer.getStyleClass().add("notice-footer");
 
-            footer.getChildren().addAll(senderLbl, timeLbl);
+        Label senderLbl = new Label("✍ " + notice.getSenderName());
+        Label timeLbl = new Label("🕒 " + notice.getTimestamp());
 
-            card.getChildren().addAll(header, contentLbl, new Separator(), footer);
-            noticeContainer.getChildren().add(card);
-        }
+        footer.getChildren().addAll(senderLbl, timeLbl);
+
+        card.getChildren().addAll(header, contentLbl, new Separator(), footer);
+        return card;
     }
 
     // ==========================
@@ -161,19 +208,14 @@ public class StudentDashboardController {
     // ==========================
     private void loadRoutine(String studentSection) {
         routineContainer.getChildren().clear();
-        List<RoutineSlot> allSlots = databaseService.getRoutineList();
-
-        // 1. Filter by Section
-        List<RoutineSlot> filteredSlots = allSlots.stream()
-                .filter(slot -> slot.getSection().equals(studentSection))
-                .collect(Collectors.toList());
 
-        // 2. Filter by Today (if selected)
+        // 1 & 2. Slots for this section (only today's if selected), straight from the routine index
+        List<RoutineSlot> filteredSlots;
         if (todayOnlyCheckBox.isSelected()) {
             String today = LocalDate.now().getDayOfWeek().getDisplayName(TextStyle.FULL, Locale.ENGLISH);
-            filteredSlots = filteredSlots.stream()
-                    .filter(slot -> slot.getDay().equalsIgnoreCase(today))
-                    .collect(Collectors.toList());
+            filteredSlots = databaseService.getRoutinesForSection(studentSection, today);
+        } else {
+            filteredSlots = databaseService.getRoutinesForSection(studentSection);
         }
 
         // 3. Empty State
@@ -220,8 +262,7 @@ public class StudentDashboardController {
     // CHAT LOGIC
     // ==========================
     private void loadChatGroups(String section) {
-        List<String> myCourses = databaseService.getRoutineList().stream()
-                .filter(slot -> slot.getSection().equals(section))
+        List<String> myCourses = databaseService.getRoutinesForSection(section).stream()
                 .map(slot -> slot.getCourse().getCourseCode())
                 .distinct()
                 .collect(Collectors.toList());
@@ -233,13 +274,43 @@ public class StudentDashboardController {
         chatCourseSelector.setOnAction(event -> {
             String selectedGroup = chatCourseSelector.getValue();
             if (selectedGroup != null) {
-                new Thread(() -> connectToChatServer(selectedGroup)).start();
+                showChatRoom(chatRoomName(selectedGroup));
             }
         });
-        new Thread(() -> connectToChatServer("General")).start();
+
+        List<String> roomNames = chatCourseSelector.getItems().stream()
+                .map(this::chatRoomName)
+                .collect(Collectors.toList());
+        showChatRoom(chatRoomName("General"));
+        new Thread(() -> connectToChatServer(roomNames)).start();
     }
 
-    private void addMessageToChat(String sender, String message, boolean isMe) {
+    private String chatRoomName(String roomSuffix) {
+        return currentStudent.getBatch() + "_" + roomSuffix;
+    }
+
+    // FX thread. Shows the room's messages; nothing is fetched, all rooms stay subscribed.
+    private void showChatRoom(String room) {
+        currentChatRoom = room;
+        List<Node> messages = chatRooms.computeIfAbsent(room, r -> new ArrayList<>());
+        ChatClient chat = chatClient;
+        if (chat != null && !chat.isMultiplexed()) {
+            // Older server, one room per connection: reconnect, its replay refills the room
+            messages.clear();
+            new Thread(() -> subscribeChatRoom(chat, room)).start();
+        }
+        chatContainer.getChildren().setAll(messages);
+    }
+
+    private void subscribeChatRoom(ChatClient chat, String room) {
+        try {
+            chat.subscribe(room);
+        } catch (IOException e) {
+            System.err.println("Could not join chat room " + room + ": " + e.getMessage());
+        }
+    }
+
+    private void addMessageToChat(String room, String sender, String message, boolean isMe) {
         Platform.runLater(() -> {
             Text text = new Text(message);
             text.getStyleClass().add(isMe ? "chat-text-me" : "chat-text-other");
@@ -258,59 +329,83 @@ public class StudentDashboardController {
             HBox container = new HBox();
             container.setAlignment(isMe ? Pos.CENTER_RIGHT : Pos.CENTER_LEFT);
             container.getChildren().add(chatBox);
-            chatContainer.getChildren().add(container);
+            chatRooms.computeIfAbsent(room, r -> new ArrayList<>()).add(container);
+            if (room.equals(currentChatRoom)) chatContainer.getChildren().add(container);
         });
     }
 
-    private void connectToChatServer(String roomSuffix) {
+    // One long-lived connection for every room in the selector (background thread)
+    private void connectToChatServer(List<String> roomNames) {
+        ChatClient chat;
         try {
-            isRunning = false;
-            if (socket != null && !socket.isClosed()) socket.close();
-
-            Platform.runLater(() -> {
-                chatContainer.getChildren().clear();
-                Label sysMsg = new Label("Connecting to " + roomSuffix + "...");
-                sysMsg.setStyle("-fx-text-fill: gray; -fx-font-size: 12px;");
-                HBox centerBox = new HBox(sysMsg);
-                centerBox.setAlignment(Pos.CENTER);
-                chatContainer.getChildren().add(centerBox);
-            });
-
-            socket = new Socket(SERVER_ADDRESS, SERVER_PORT);
-            reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            writer = new PrintWriter(socket.getOutputStream(), true);
             isRunning = true;
-
-            String uniqueGroupName = currentStudent.getBatch() + "_" + roomSuffix;
-            writer.println("JOIN:" + uniqueGroupName + ":" + currentStudent.getFullName());
-
-            String incomingMessage;
-            while (isRunning && (incomingMessage = reader.readLine()) != null) {
-                String finalMsg = incomingMessage;
-                if(finalMsg.contains(":")) {
-                    String[] parts = finalMsg.split(":", 2);
-                    boolean isMe = parts[0].trim().equals(currentStudent.getFullName());
-                    addMessageToChat(parts[0].trim(), parts[1].trim(), isMe);
-                } else {
-                    Platform.runLater(() -> {
-                        Label sysLabel = new Label(finalMsg);
-                        sysLabel.setStyle("-fx-text-fill: gray; -fx-font-size: 10px;");
-                        HBox centerBox = new HBox(sysLabel);
-                        centerBox.setAlignment(Pos.CENTER);
-                        chatContainer.getChildren().add(centerBox);
-                    });
-                }
+            chat = ChatClient.connect(SERVER_ADDRESS, SERVER_PORT, currentStudent.getFullName());
+            chatClient = chat;
+            if (chat.isMultiplexed()) {
+                for (String room : roomNames) chat.subscribe(room);
+            } else {
+                chat.subscribe(currentChatRoom);
             }
         } catch (IOException e) {
             if (isRunning) Platform.runLater(() -> chatContainer.getChildren().add(new Label("Connection Lost.")));
+            return;
+        }
+
+        // Reads until logout; a dropped connection is picked up again
+        while (isRunning) {
+            try {
+                // Sender and text arrive as separate fields, so names and messages may contain ':'
+                ChatFrame incoming;
+                while (isRunning && (incoming = chat.read()) != null) {
+                    boolean isMe = incoming.type == ChatFrame.MESSAGE && incoming.sender.equals(currentStudent.getFullName());
+                    addMessageToChat(incoming.room, incoming.sender, incoming.text, isMe);
+                }
+            } catch (IOException e) {
+                // dropped, or the server went silent
+            }
+            if (!isRunning || !reconnectChat(chat)) return;
         }
     }
 
+    // After a dropped connection: retries with growing, jittered delays (so a whole
+    // class does not reconnect in step), then resumes every room where it left off
+    private boolean reconnectChat(ChatClient chat) {
+        Platform.runLater(() -> chatContainer.getChildren().add(new Label("Connection Lost. Reconnecting...")));
+        long delay = 1000;
+        while (isRunning) {
+            try {
+                Thread.sleep(delay / 2 + (long) (Math.random() * delay));
+                boolean resumed = chat.reconnect();
+                if (!isRunning) {
+                    chat.close(); // logged out meanwhile
+                    return false;
+                }
+                Platform.runLater(() -> {
+                    if (!resumed) {
+                        // Older server: it replays recent history instead of what was missed
+                        chatRooms.values().forEach(List::clear);
+                        chatContainer.getChildren().clear();
+                    }
+                    chatContainer.getChildren().add(new Label("Reconnected."));
+                });
+                return true;
+            } catch (IOException e) {
+                delay = Math.min(delay * 2, 30_000);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
     @FXML private void onSendButtonClick() {
         String msg = messageField.getText();
-        if (!msg.isEmpty() && writer != null) {
-            writer.println("MSG:" + msg);
-            writer.flush();
+        if (!msg.isEmpty() && chatClient != null) {
+            try {
+                chatClient.send(currentChatRoom, msg);
+            } catch (IOException e) {
+                System.err.println("Could not send chat message: " + e.getMessage());
+            }
             messageField.clear();
         }
     }
@@ -321,7 +416,10 @@ public class StudentDashboardController {
     @FXML private void onLogoutButtonClick() {
         try {
             isRunning = false;
-            if(socket != null && !socket.isClosed()) socket.close();
+            if (chatClient != null) chatClient.close();
+            databaseService.removeNoticeListener(noticeListener);
+            databaseService.removeRoutineListener(routineListener);
+            databaseService.flush(); // write this session's changes before leaving
 
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/university/view/Login.fxml"));
             Stage currentStage = (Stage) logoutButton.getScene().getWindow();
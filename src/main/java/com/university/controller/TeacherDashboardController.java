@@ -1,13 +1,17 @@
 package com.university.controller;
 
+import com.university.model.DataListener;
 import com.university.model.DatabaseService;
 import com.university.model.Notice;
 import com.university.model.RoutineSlot;
 import com.university.model.Teacher;
+import com.university.server.ChatClient;
+import com.university.server.ChatFrame;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.FlowPane;
@@ -18,15 +22,14 @@ import javafx.scene.text.TextFlow;
 import javafx.stage.Stage;
 import org.kordamp.ikonli.javafx.FontIcon;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.Socket;
 import java.time.LocalDate;
 import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -64,16 +67,47 @@ public class TeacherDashboardController {
     // DATA & SERVICES
     // ==========================
     private Teacher currentTeacher;
-    private DatabaseService databaseService = new DatabaseService();
+    private DatabaseService databaseService = DatabaseService.getInstance();
+
+    // Keep this dashboard in step with changes made elsewhere (removed on logout)
+    private final DataListener<Notice> noticeListener = new DataListener<>() {
+        @Override public void added(Notice notice) {
+            if (!notice.getSenderName().equals(currentTeacher.getFullName())) return;
+            if (noticeCardCount() == 0) sentNoticeContainer.getChildren().clear(); // drop the empty label
+            sentNoticeContainer.getChildren().add(0, createSentNoticeCard(notice));
+            if (sentNoticeContainer.getChildren().size() > NOTICE_FEED_SIZE) {
+                sentNoticeContainer.getChildren().remove(NOTICE_FEED_SIZE);
+            }
+        }
+        @Override public void removed(Notice notice) {
+            if (sentNoticeContainer.getChildren().removeIf(card -> card.getUserData() == notice)
+                    && noticeCardCount() == 0) {
+                showNoSentNotices();
+            }
+        }
+    };
+
+    private final DataListener<RoutineSlot> routineListener = new DataListener<>() {
+        @Override public void added(RoutineSlot slot) { refreshIfMine(slot); }
+        @Override public void removed(RoutineSlot slot) { refreshIfMine(slot); }
+
+        // Redraws from the teacher index, so this costs only this teacher's slots
+        private void refreshIfMine(RoutineSlot slot) {
+            if (!slot.getTeacherName().equals(currentTeacher.getFullName())) return;
+            loadRoutine(currentTeacher.getFullName());
+            loadNoticeTargets(currentTeacher.getFullName());
+        }
+    };
 
     // ==========================
     // NETWORKING VARIABLES
     // ==========================
-    private Socket socket;
-    private BufferedReader reader;
-    private PrintWriter writer;
+    private volatile ChatClient chatClient;
+    private final Map<String, List<Node>> chatRooms = new HashMap<>(); // messages per room, FX thread only
+    private volatile String currentChatRoom;
     private static final String SERVER_ADDRESS = "localhost";
     private static final int SERVER_PORT = 12345;
+    private static final int NOTICE_FEED_SIZE = 100;
     private volatile boolean isRunning = false;
 
     @FXML
@@ -92,6 +126,9 @@ public class TeacherDashboardController {
         // Load Notice Data
         loadNoticeTargets(teacher.getFullName());
         loadSentNotices(teacher.getFullName());
+
+        databaseService.addNoticeListener(noticeListener);
+        databaseService.addRoutineListener(routineListener);
     }
 
     // ==========================
@@ -107,8 +144,7 @@ public class TeacherDashboardController {
 
     private void loadNoticeTargets(String teacherName) {
         // Find unique sections where the teacher takes classes
-        List<String> mySections = databaseService.getRoutineList().stream()
-                .filter(slot -> slot.getTeacherName().equals(teacherName))
+        List<String> mySections = databaseService.getRoutinesForTeacher(teacherName).stream()
                 .map(RoutineSlot::getSection)
                 .distinct()
                 .collect(Collectors.toList());
@@ -135,76 +171,84 @@ public class TeacherDashboardController {
 
         showAlert("Success", "Notice Posted Successfully!");
 
-        // Reset form and reload list
+        // Reset form (the new card is added by noticeListener)
         noticeTitleField.clear();
         noticeContentArea.clear();
-        loadSentNotices(currentTeacher.getFullName());
     }
 
     private void loadSentNotices(String teacherName) {
         sentNoticeContainer.getChildren().clear();
 
-        // Filter notices sent by this teacher
-        List<Notice> myNotices = databaseService.getNoticeList().stream()
-                .filter(n -> n.getSenderName().equals(teacherName))
-                .collect(Collectors.toList());
+        // Latest notices sent by this teacher (newest first, from the notice feed index)
+        List<Notice> myNotices = databaseService.getLatestNoticesBySender(teacherName, NOTICE_FEED_SIZE);
 
         if (myNotices.isEmpty()) {
-            Label emptyLabel = new Label("You haven't posted any notices yet.");
-            emptyLabel.setStyle("-fx-text-fill: #999; -fx-font-size: 14px;");
-            sentNoticeContainer.getChildren().add(emptyLabel);
+            showNoSentNotices();
             return;
         }
 
         // Generate Notice Cards (Latest first)
-        for (int i = myNotices.size() - 1; i >= 0; i--) {
-            Notice notice = myNotices.get(i);
-
-            VBox card = new VBox();
-            card.getStyleClass().add("notice-card");
-
-            HBox header = new HBox(10);
-            header.setAlignment(Pos.CENTER_LEFT);
-
-            Label titleLbl = new Label(notice.getTitle());
-            titleLbl.getStyleClass().add("notice-title");
-            HBox.setHgrow(titleLbl, javafx.scene.layout.Priority.ALWAYS);
-            titleLbl.setMaxWidth(Double.MAX_VALUE);
-
-            // Delete Button Implementation
-            Button deleteBtn = new Button();
-            deleteBtn.setGraphic(new FontIcon("fth-trash-2"));
-            deleteBtn.getStyleClass().addAll("button-outlined", "danger");
-            deleteBtn.setStyle("-fx-padding: 5 10 5 10;");
-
-            deleteBtn.setOnAction(e -> {
-                Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
-                alert.setTitle("Delete Notice");
-                alert.setHeaderText(null);
-                alert.setContentText("Are you sure you want to delete this notice?");
-
-                Optional<ButtonType> result = alert.showAndWait();
-                if (result.isPresent() && result.get() == ButtonType.OK) {
-                    databaseService.deleteNotice(notice);
-                    loadSentNotices(teacherName); // Refresh list
-                }
-            });
+        for (Notice notice : myNotices) {
+            sentNoticeContainer.getChildren().add(createSentNoticeCard(notice));
+        }
+    }
 
-            header.getChildren().addAll(titleLbl, deleteBtn);
+    private void showNoSentNotices() {
+        Label emptyLabel = new Label("You haven't posted any notices yet.");
+        emptyLabel.setStyle("-fx-text-fill: #999; -fx-font-size: 14px;");
+        sentNoticeContainer.getChildren().add(emptyLabel);
+    }
 
-            Label targetLbl = new Label("To: " + notice.getTargetSection());
-            targetLbl.getStyleClass().add("notice-badge");
+    // Cards carry their notice as user data; the empty label does not
+    private int noticeCardCount() {
+        return (int) sentNoticeContainer.getChildren().stream().filter(n -> n.getUserData() != null).count();
+    }
 
-            Label contentLbl = new Label(notice.getContent());
-            contentLbl.getStyleClass().add("notice-content");
-            contentLbl.setWrapText(true);
+    private VBox createSentNoticeCard(Notice notice) {
+        VBox card = new VBox();
+        card.setUserData(notice);
+        card.getStyleClass().add("notice-card");
+
+        HBox header = new HBox(10);
+        header.setAlignment(Pos.CENTER_LEFT);
+
+        Label titleLbl = new Label(notice.getTitle());
+        titleLbl.getStyleClass().add("notice-title");
+        HBox.setHgrow(titleLbl, javafx.scene.layout.Priority.ALWAYS);
+        titleLbl.setMaxWidth(Double.MAX_VALUE);
+
+        // Delete Button Implementation
+        Button deleteBtn = new Button();
+        deleteBtn.setGraphic(new FontIcon("fth-trash-2"));
+        deleteBtn.getStyleClass().addAll("button-outlined", "danger");
+        deleteBtn.setStyle("-fx-padding: 5 10 5 10;");
+
+        deleteBtn.setOnAction(e -> {
+            Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+            alert.setTitle("Delete Notice");
+            alert.setHeaderText(null);
+            alert.setContentText("Are you sure you want to delete this notice?");
+
+            Optional<ButtonType> result = alert.showAndWait();
+            if (result.isPresent() && result.get() == ButtonType.OK) {
+                databaseService.deleteNotice(notice); // card is removed by noticeListener
+            }
+        });
 
-            Label timeLbl = new Label("🕒 " + notice.getTimestamp());
-            timeLbl.getStyleClass().add("notice-footer");
+        header.getChildren().addAll(titleLbl, deleteBtn);
 
-            card.getChildren().addAll(header, targetLbl, new Separator(), contentLbl, new Separator(), timeLbl);
-            sentNoticeContainer.getChildren().add(card);
-        }
+        Label targetLbl = new Label("To: " + notice.getTargetSection());
+        targetLbl.getStyleClass().add("notice-badge");
+
+        Label contentLbl = new Label(notice.getContent());
+        contentLbl.getStyleClass().add("notice-content");
+        contentLbl.setWrapText(true);
+
+        Label timeLbl = new Label("🕒 " + notice.getTimestamp());
+        timeLbl.getStyleClass().add("notice-footer");
+
+        card.getChildren().addAll(header, targetLbl, new Separator(), contentLbl, new Separator(), timeLbl);
+        return card;
     }
 
     private void showAlert(String title, String content) {
@@ -221,19 +265,14 @@ public class TeacherDashboardController {
 
     private void loadRoutine(String teacherFullName) {
         teacherRoutineContainer.getChildren().clear();
-        List<RoutineSlot> allSlots = databaseService.getRoutineList();
-
-        // Filter by teacher name
-        List<RoutineSlot> filteredSlots = allSlots.stream()
-                .filter(slot -> slot.getTeacherName().equals(teacherFullName))
-                .collect(Collectors.toList());
 
-        // Filter by Today
+        // This teacher's slots (only today's if selected), straight from the routine index
+        List<RoutineSlot> filteredSlots;
         if (todayOnlyCheckBox.isSelected()) {
             String today = LocalDate.now().getDayOfWeek().getDisplayName(TextStyle.FULL, Locale.ENGLISH);
-            filteredSlots = filteredSlots.stream()
-                    .filter(slot -> slot.getDay().equalsIgnoreCase(today))
-                    .collect(Collectors.toList());
+            filteredSlots = databaseService.getRoutinesForTeacher(teacherFullName, today);
+        } else {
+            filteredSlots = databaseService.getRoutinesForTeacher(teacherFullName);
         }
 
         // Empty state
@@ -268,7 +307,7 @@ public class TeacherDashboardController {
     // CHAT LOGIC
     // ==========================
 
-    private void addMessageToChat(String sender, String message, boolean isMe) {
+    private void addMessageToChat(String room, String sender, String message, boolean isMe) {
         Platform.runLater(() -> {
             Text text = new Text(message);
             text.getStyleClass().add(isMe ? "chat-text-me" : "chat-text-other");
@@ -285,13 +324,13 @@ public class TeacherDashboardController {
             HBox container = new HBox();
             container.setAlignment(isMe ? Pos.CENTER_RIGHT : Pos.CENTER_LEFT);
             container.getChildren().add(chatBox);
-            chatContainer.getChildren().add(container);
+            chatRooms.computeIfAbsent(room, r -> new ArrayList<>()).add(container);
+            if (room.equals(currentChatRoom)) chatContainer.getChildren().add(container);
         });
     }
 
     private void loadTeacherChatGroups(String teacherName) {
-        List<String> myClasses = databaseService.getRoutineList().stream()
-                .filter(slot -> slot.getTeacherName().equals(teacherName))
+        List<String> myClasses = databaseService.getRoutinesForTeacher(teacherName).stream()
                 .map(slot -> slot.getSection() + "_" + slot.getCourse().getCourseCode())
                 .distinct()
                 .collect(Collectors.toList());
@@ -300,48 +339,101 @@ public class TeacherDashboardController {
             return;
         }
         chatCourseSelector.getItems().addAll(myClasses);
-        if (!myClasses.isEmpty()) {
-            chatCourseSelector.setValue(myClasses.get(0));
-            new Thread(() -> connectToChatServer(myClasses.get(0))).start();
-        }
+        chatCourseSelector.setValue(myClasses.get(0));
+        showChatRoom(myClasses.get(0));
+        new Thread(() -> connectToChatServer(myClasses)).start();
         chatCourseSelector.setOnAction(e -> {
-            if (chatCourseSelector.getValue() != null)
-                new Thread(() -> connectToChatServer(chatCourseSelector.getValue())).start();
+            if (chatCourseSelector.getValue() != null) showChatRoom(chatCourseSelector.getValue());
         });
     }
 
-    private void connectToChatServer(String uniqueRoomName) {
+    // FX thread. Shows the room's messages; nothing is fetched, all rooms stay subscribed.
+    private void showChatRoom(String room) {
+        currentChatRoom = room;
+        List<Node> messages = chatRooms.computeIfAbsent(room, r -> new ArrayList<>());
+        ChatClient chat = chatClient;
+        if (chat != null && !chat.isMultiplexed()) {
+            // Older server, one room per connection: reconnect, its replay refills the room
+            messages.clear();
+            new Thread(() -> subscribeChatRoom(chat, room)).start();
+        }
+        chatContainer.getChildren().setAll(messages);
+    }
+
+    private void subscribeChatRoom(ChatClient chat, String room) {
+        try {
+            chat.subscribe(room);
+        } catch (IOException e) {
+            System.err.println("Could not join chat room " + room + ": " + e.getMessage());
+        }
+    }
+
+    // One long-lived connection for all of this teacher's classes (background thread)
+    private void connectToChatServer(List<String> roomNames) {
+        ChatClient chat;
         try {
-            isRunning = false;
-            if (socket != null && !socket.isClosed()) socket.close();
-            Platform.runLater(() -> {
-                chatContainer.getChildren().clear();
-                chatContainer.getChildren().add(new Label("Joining " + uniqueRoomName + "..."));
-            });
-            socket = new Socket(SERVER_ADDRESS, SERVER_PORT);
-            reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            writer = new PrintWriter(socket.getOutputStream(), true);
             isRunning = true;
-            writer.println("JOIN:" + uniqueRoomName + ":" + currentTeacher.getFullName() + " (Teacher)");
-            String incomingMessage;
-            while (isRunning && (incomingMessage = reader.readLine()) != null) {
-                String finalMsg = incomingMessage;
-                if(finalMsg.contains(":")) {
-                    String[] parts = finalMsg.split(":", 2);
-                    boolean isMe = parts[0].trim().contains(currentTeacher.getFullName());
-                    addMessageToChat(parts[0].trim(), parts[1].trim(), isMe);
-                } else {
-                    Platform.runLater(() -> chatContainer.getChildren().add(new Label(finalMsg)));
+            chat = ChatClient.connect(SERVER_ADDRESS, SERVER_PORT, currentTeacher.getFullName() + " (Teacher)");
+            chatClient = chat;
+            if (chat.isMultiplexed()) {
+                for (String room : roomNames) chat.subscribe(room);
+            } else {
+                chat.subscribe(currentChatRoom);
+            }
+        } catch (IOException e) { if (isRunning) Platform.runLater(() -> chatContainer.getChildren().add(new Label("Connection Lost."))); return; }
+
+        // Reads until logout; a dropped connection is picked up again
+        while (isRunning) {
+            try {
+                ChatFrame incoming;
+                while (isRunning && (incoming = chat.read()) != null) {
+                    boolean isMe = incoming.type == ChatFrame.MESSAGE && incoming.sender.contains(currentTeacher.getFullName());
+                    addMessageToChat(incoming.room, incoming.sender, incoming.text, isMe);
                 }
+            } catch (IOException e) { /* dropped, or the server went silent */ }
+            if (!isRunning || !reconnectChat(chat)) return;
+        }
+    }
+
+    // After a dropped connection: retries with growing, jittered delays (so a whole
+    // class does not reconnect in step), then resumes every room where it left off
+    private boolean reconnectChat(ChatClient chat) {
+        Platform.runLater(() -> chatContainer.getChildren().add(new Label("Connection Lost. Reconnecting...")));
+        long delay = 1000;
+        while (isRunning) {
+            try {
+                Thread.sleep(delay / 2 + (long) (Math.random() * delay));
+                boolean resumed = chat.reconnect();
+                if (!isRunning) {
+                    chat.close(); // logged out meanwhile
+                    return false;
+                }
+                Platform.runLater(() -> {
+                    if (!resumed) {
+                        // Older server: it replays recent history instead of what was missed
+                        chatRooms.values().forEach(List::clear);
+                        chatContainer.getChildren().clear();
+                    }
+                    chatContainer.getChildren().add(new Label("Reconnected."));
+                });
+                return true;
+            } catch (IOException e) {
+                delay = Math.min(delay * 2, 30_000);
+            } catch (InterruptedException e) {
+                return false;
             }
-        } catch (IOException e) { if (isRunning) Platform.runLater(() -> chatContainer.getChildren().add(new Label("Connection Lost."))); }
+        }
+        return false;
     }
 
     @FXML private void onSendButtonClick() {
         String msg = messageField.getText();
-        if (!msg.isEmpty() && writer != null) {
-            writer.println("MSG:" + msg);
-            writer.flush();
+        if (!msg.isEmpty() && chatClient != null) {
+            try {
+                chatClient.send(currentChatRoom, msg);
+            } catch (IOException e) {
+                System.err.println("Could not send chat message: " + e.getMessage());
+            }
             messageField.clear();
         }
     }
@@ -353,7 +445,10 @@ public class TeacherDashboardController {
     @FXML private void onLogoutButtonClick() {
         try {
             isRunning = false;
-            if(socket != null && !socket.isClosed()) socket.close();
+            if (chatClient != null) chatClient.close();
+            databaseService.removeNoticeListener(noticeListener);
+            databaseService.removeRoutineListener(routineListener);
+            databaseService.flush(); // write this session's changes before leaving
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/university/view/Login.fxml"));
             Scene scene = new Scene(loader.load());
             Stage currentStage = (Stage) logoutButton.getScene().getWindow();
@@ -3,6 +3,8 @@ package com.university.model;
 // Inheritance
 public class Admin extends User {
 
+    private static final long serialVersionUID = -3381046300360472545L;
+
     public Admin(String userId, String password, String fullName) {
         super(userId, password, fullName);
     }
@@ -0,0 +1,311 @@
+package com.university.model;
+
+import java.io.*;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// Append-only record log for one entity type (add / update / delete).
+// Each mutation appends one small record instead of rewriting the whole .dat file.
+//
+// Payloads are encoded by the store's RecordCodec; the header records the codec's
+// schema version (logs before format 3 hold Java-serialized payloads instead).
+//
+// Updates and deletes name their record by key and by its position in the store's list
+// (format 4). Natural keys are not unique in every store (two notices can share one), so
+// replay goes by position and uses the key to check it; older logs only have the key.
+//
+// Every log carries a generation number. Compaction rotates the active log to
+// "<name>.<generation>" and starts a new generation; a snapshot that covers
+// generation G makes every log with generation <= G obsolete.
+//
+// In write-behind mode append() only buffers the record; flush() writes everything
+// buffered since the last flush in one write and one fsync (group commit).
+// A record that could not be written is never half in the log: the file is cut back to
+// where it was, and the caller is told (append throws, flush keeps it buffered).
+class ChangeLog {
+
+    // Record types
+    static final byte ADD = 1;
+    static final byte UPDATE = 2;
+    static final byte DELETE = 3;
+
+    private static final int MAGIC = 0x43504C47; // "CPLG"
+    private static final byte VERSION = 4;
+
+    private final File file;
+    private final int schemaVersion;
+    private final boolean writeBehind;
+    private long generation;
+    private int recordCount;
+    private int commitCount; // flushes that wrote something
+
+    // Records appended but not yet written (write-behind only). Guarded by this;
+    // ioLock is held for the whole write so rotate() never races a flush in progress.
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final Object ioLock = new Object();
+    private boolean headerWritten; // header is in the file or in pending
+
+    ChangeLog(String fileName, long generation, int schemaVersion, boolean writeBehind) {
+        this.file = new File(fileName);
+        this.generation = generation;
+        this.schemaVersion = schemaVersion;
+        this.writeBehind = writeBehind;
+    }
+
+    // --- One replayed record ---
+    static class Entry {
+        final byte op;
+        final String key;      // key of the record that is updated / deleted
+        final int position;    // its index in the list, -1 if not logged (format < 4)
+        final byte[] payload;  // new value (empty for DELETE)
+        final int schemaVersion; // codec schema of the payload, 0 = Java serialization
+
+        Entry(byte op, String key, int position, byte[] payload, int schemaVersion) {
+            this.op = op;
+            this.key = key;
+            this.position = position;
+            this.payload = payload;
+            this.schemaVersion = schemaVersion;
+        }
+    }
+
+    File getFile() { return file; }
+    synchronized long getGeneration() { return generation; }
+    synchronized int getRecordCount() { return recordCount; }
+    synchronized int getCommitCount() { return commitCount; }
+
+    // --- Write Path ---
+    // Record layout: [int bodyLength][byte op][UTF key][int position][payload bytes][int crc32(body)]
+    // In write-behind mode the record is buffered, unless `now` is set: it is then written
+    // and fsynced after everything buffered before it, before this returns. Throws if the
+    // record could not be written; it is then not in the log at all.
+    void append(byte op, String key, int position, byte[] payload, boolean now) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + payload.length);
+        DataOutputStream body = new DataOutputStream(bytes);
+        body.writeByte(op);
+        body.writeUTF(key);
+        body.writeInt(position);
+        body.write(payload);
+
+        if (writeBehind && !now) {
+            synchronized (this) {
+                record(bytes).writeTo(pending);
+                recordCount++;
+            }
+            return;
+        }
+
+        synchronized (ioLock) {
+            if (writeBehind) flush(); // keeps the order; if it fails, this record is not written either
+            ByteArrayOutputStream record;
+            synchronized (this) {
+                record = record(bytes);
+            }
+            // Opened per append so the file is never held open between edits;
+            // the whole record goes down in a single write call.
+            long validLength = file.length();
+            try (FileOutputStream fos = new FileOutputStream(file, true)) {
+                fos.write(record.toByteArray());
+                if (writeBehind) fos.getFD().sync();
+            } catch (IOException e) {
+                cutBack(validLength);
+                synchronized (this) {
+                    // The header went with it: the next record writes it again
+                    if (validLength == 0 && pending.size() == 0) headerWritten = false;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                recordCount++;
+            }
+        }
+    }
+
+    // Caller holds this. The framed record, behind the header if the log has none yet.
+    private ByteArrayOutputStream record(ByteArrayOutputStream bytes) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream(bytes.size() + 24);
+        DataOutputStream out = new DataOutputStream(record);
+        if (!headerWritten && file.length() == 0) {
+            writeHeader(out);
+        }
+        headerWritten = true;
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+        out.writeInt((int) crc.getValue());
+        return record;
+    }
+
+    // Caller holds ioLock. Cuts a failed write back off the file.
+    private void cutBack(long validLength) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(validLength);
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Writes all buffered records with a single write + fsync. A failed write is cut
+    // back off the file and its records stay buffered for the next attempt.
+    void flush() throws IOException {
+        synchronized (ioLock) {
+            ByteArrayOutputStream batch;
+            synchronized (this) {
+                if (pending.size() == 0) return;
+                batch = pending;
+                pending = new ByteArrayOutputStream(batch.size());
+            }
+
+            long validLength = file.length();
+            try (FileOutputStream fos = new FileOutputStream(file, true)) {
+                batch.writeTo(fos);
+                fos.getFD().sync();
+                synchronized (this) {
+                    commitCount++;
+                }
+            } catch (IOException e) {
+                cutBack(validLength);
+                synchronized (this) {
+                    pending.writeTo(batch); // keep the order: failed batch first
+                    pending = batch;
+                }
+                throw e;
+            }
+        }
+    }
+
+    // Moves the active log aside as "<name>.<generation>" and starts the next generation.
+    // Returns the rotated file, or null if nothing had been logged yet.
+    File rotate() throws IOException {
+        synchronized (ioLock) {
+            flush(); // buffered records belong to the generation being rotated out
+            synchronized (this) {
+                return rotateFile();
+            }
+        }
+    }
+
+    private File rotateFile() throws IOException {
+        File rotated = null;
+        if (file.exists() && file.length() > 0) {
+            rotated = new File(file.getPath() + "." + generation);
+            if (!file.renameTo(rotated)) {
+                throw new IOException("Could not rotate " + file);
+            }
+        }
+        generation++;
+        recordCount = 0;
+
+        // Create the new generation right away so the header is in place before the first append
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            writeHeader(out);
+        }
+        headerWritten = true;
+        return rotated;
+    }
+
+    private void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(generation);
+        out.writeShort(schemaVersion);
+    }
+
+    // --- Read Path ---
+
+    // Reads only the generation from a log header (-1 if the file has no valid header).
+    static long readGeneration(File logFile) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(logFile))) {
+            if (in.readInt() != MAGIC) return -1;
+            byte version = in.readByte();
+            return version >= 2 ? in.readLong() : 1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    // True if new records may be appended to this file (current format and codec schema).
+    static boolean isCurrentFormat(File logFile, int schemaVersion) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(logFile))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) return false;
+            in.readLong(); // generation
+            return in.readUnsignedShort() == schemaVersion;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Replays every valid record in order. Replay stops at the first record that is
+    // cut short or fails its checksum (a crash mid-append); with truncateTail the
+    // file is cut back to the last good record so later appends follow valid data.
+    // Returns the number of records replayed.
+    static int replay(File logFile, boolean truncateTail, Consumer<Entry> consumer) throws IOException {
+        if (!logFile.exists() || logFile.length() == 0) return 0;
+
+        long validLength;
+        int count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a change log: " + logFile);
+            }
+            byte version = in.readByte();
+            long position = 5;
+            if (version >= 2) {
+                in.readLong(); // generation
+                position += 8;
+            }
+            int schemaVersion = 0;
+            if (version >= 3) {
+                schemaVersion = in.readUnsignedShort();
+                position += 2;
+            }
+            validLength = position;
+            long fileLength = logFile.length();
+
+            while (true) {
+                byte[] body;
+                try {
+                    int length = in.readInt();
+                    if (length < 0 || position + 4 + length > fileLength) break;
+                    body = new byte[length];
+                    in.readFully(body);
+                    position += 4 + length;
+
+                    if (version >= 2) {
+                        int storedCrc = in.readInt();
+                        position += 4;
+                        CRC32 crc = new CRC32();
+                        crc.update(body);
+                        if ((int) crc.getValue() != storedCrc) break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+
+                DataInputStream bodyIn = new DataInputStream(new ByteArrayInputStream(body));
+                byte op = bodyIn.readByte();
+                String key = bodyIn.readUTF();
+                int recordPosition = version >= 4 ? bodyIn.readInt() : -1;
+                byte[] payload = bodyIn.readAllBytes();
+                consumer.accept(new Entry(op, key, recordPosition, payload, schemaVersion));
+                validLength = position;
+                count++;
+            }
+        }
+
+        if (truncateTail && validLength < logFile.length()) {
+            System.err.println("Discarding torn tail of " + logFile + " ("
+                    + (logFile.length() - validLength) + " bytes)");
+            try (RandomAccessFile raf = new RandomAccessFile(logFile, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+        return count;
+    }
+
+    // Replays the active log and keeps counting from its record total.
+    void replay(Consumer<Entry> consumer) throws IOException {
+        recordCount = replay(file, true, consumer);
+    }
+}
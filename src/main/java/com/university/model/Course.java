@@ -3,6 +3,8 @@ package com.university.model;
 import java.io.Serializable;
 
 public class Course implements Serializable {
+
+    private static final long serialVersionUID = 8678950936374563650L;
     private String courseCode;
     private String courseTitle;
     private double credits;
@@ -0,0 +1,12 @@
+package com.university.model;
+
+// Change notifications from DatabaseService for one entity type.
+// Called on the thread that made the change, after it has been stored and logged.
+public interface DataListener<T> {
+
+    default void added(T item) {}
+
+    default void updated(T oldItem, T newItem) {}
+
+    default void removed(T item) {}
+}
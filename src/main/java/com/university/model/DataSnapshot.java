@@ -0,0 +1,38 @@
+package com.university.model;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+// Immutable, versioned view of one store as it was at a single point in time.
+// Readers iterate it without locks on any thread; later changes go to a new version
+// and never show up in (or half-way through) a snapshot already handed out.
+public final class DataSnapshot<T> extends AbstractList<T> implements RandomAccess {
+
+    private final List<T> items; // never modified once the snapshot is published
+    private final long version;
+
+    DataSnapshot(List<T> items, long version) {
+        this.items = items;
+        this.version = version;
+    }
+
+    // Number of changes the store had seen when this snapshot was taken
+    public long getVersion() { return version; }
+
+    @Override
+    public T get(int index) {
+        return items.get(index);
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    // Delegated so a mapped store is searched without decoding records
+    @Override
+    public int indexOf(Object o) {
+        return items.indexOf(o);
+    }
+}
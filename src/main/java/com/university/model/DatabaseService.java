@@ -1,15 +1,42 @@
 package com.university.model;
 
-import java.io.*;
-import java.util.ArrayList;
+import java.io.File;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+// One shared instance per process (getInstance): every screen sees the same data and
+// the .dat files are loaded once, not on every navigation.
 public class DatabaseService {
 
-    // Lists
-    private ArrayList<User> userList;
-    private ArrayList<Course> courseList;
-    private ArrayList<RoutineSlot> routineList;
-    private ArrayList<Notice> noticeList;
+    private static DatabaseService instance;
+
+    // Stores (snapshot file + append-only change log per entity type)
+    private final EntityStore<User> userStore;
+    private final EntityStore<Course> courseStore;
+    private final EntityStore<RoutineSlot> routineStore;
+    private final EntityStore<Notice> noticeStore;
+
+    // Routine indexes (built on first query, then kept up to date by add / delete).
+    // Guarded by routineStore's lock, so an index always matches the store.
+    private final SecondaryIndex<RoutineSlot> routinesBySection = new SecondaryIndex<>(RoutineSlot::getSection);
+    private final SecondaryIndex<RoutineSlot> routinesByTeacher = new SecondaryIndex<>(RoutineSlot::getTeacherName);
+    private final SecondaryIndex<RoutineSlot> routinesBySectionDay =
+            new SecondaryIndex<>(slot -> dayKey(slot.getSection(), slot.getDay()));
+    private final SecondaryIndex<RoutineSlot> routinesByTeacherDay =
+            new SecondaryIndex<>(slot -> dayKey(slot.getTeacherName(), slot.getDay()));
+    private boolean routineIndexesBuilt = false;
+
+    // Notice feeds by target section and sender (built on first query, like the routine
+    // indexes; guarded by noticeStore's lock)
+    private final NoticeFeed noticeFeed = new NoticeFeed();
+    private boolean noticeFeedBuilt = false;
+
+    // Change listeners (screens update themselves instead of reloading)
+    private final CopyOnWriteArrayList<DataListener<User>> userListeners = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<DataListener<Course>> courseListeners = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<DataListener<RoutineSlot>> routineListeners = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<DataListener<Notice>> noticeListeners = new CopyOnWriteArrayList<>();
 
     // File Names
     private static final String USER_FILE = "users.dat";
@@ -17,97 +44,268 @@ public class DatabaseService {
     private static final String ROUTINE_FILE = "routines.dat";
     private static final String NOTICE_FILE = "notices.dat";
 
-    public DatabaseService() {
-        // Load all data
-        this.userList = loadData(USER_FILE);
-        this.courseList = loadData(COURSE_FILE);
-        this.routineList = loadData(ROUTINE_FILE);
-        this.noticeList = loadData(NOTICE_FILE);
+    public static synchronized DatabaseService getInstance() {
+        if (instance == null) {
+            instance = new DatabaseService();
+            // Last chance to write buffered changes if the JVM exits without close()
+            Runtime.getRuntime().addShutdownHook(new Thread(instance::close, "db-shutdown"));
+        }
+        return instance;
+    }
+
+    private DatabaseService() {
+        this(null); // the working directory
+    }
+
+    // Stores kept in dataDir instead (tests)
+    DatabaseService(File dataDir) {
+        // Load all data (snapshot + replay of logged changes)
+        // Courses come before routines: routine slots reference their course by code.
+        // Users and routines are memory-mapped and decoded on access (they grow with the campus).
+        // Arguments: file, codec, key, unique key (primary-key index), memory-mapped
+        this.userStore = new EntityStore<>(path(dataDir, USER_FILE), RecordCodecs.USERS, User::getUserId, true, true);
+        this.courseStore = new EntityStore<>(path(dataDir, COURSE_FILE), RecordCodecs.COURSES, Course::getCourseCode, true, false);
+        this.routineStore = new EntityStore<>(path(dataDir, ROUTINE_FILE),
+                RecordCodecs.routineSlots(courseStore::find), DatabaseService::routineKey, false, true);
+        this.noticeStore = new EntityStore<>(path(dataDir, NOTICE_FILE), RecordCodecs.NOTICES, DatabaseService::noticeKey, false, false);
+    }
+
+    private static String path(File dataDir, String fileName) {
+        return new File(dataDir, fileName).getPath();
+    }
+
+    // --- Write-behind ---
+    // Changes are written to disk by a background group commit shortly after they are made
+    // (see EntityStore.FLUSH_DELAY_MS). flush() writes everything still buffered now;
+    // returns false if any store could not be written.
+    public boolean flush() {
+        boolean ok = userStore.flush();
+        ok &= courseStore.flush();
+        ok &= routineStore.flush();
+        ok &= noticeStore.flush();
+        return ok;
+    }
+
+    // Flushes and switches every store to writing each change immediately (app shutdown)
+    public boolean close() {
+        boolean ok = userStore.close();
+        ok &= courseStore.close();
+        ok &= routineStore.close();
+        ok &= noticeStore.close();
+        return ok;
+    }
+
+    // --- Listeners ---
+    public void addUserListener(DataListener<User> listener) { userListeners.add(listener); }
+    public void removeUserListener(DataListener<User> listener) { userListeners.remove(listener); }
+    public void addCourseListener(DataListener<Course> listener) { courseListeners.add(listener); }
+    public void removeCourseListener(DataListener<Course> listener) { courseListeners.remove(listener); }
+    public void addRoutineListener(DataListener<RoutineSlot> listener) { routineListeners.add(listener); }
+    public void removeRoutineListener(DataListener<RoutineSlot> listener) { routineListeners.remove(listener); }
+    public void addNoticeListener(DataListener<Notice> listener) { noticeListeners.add(listener); }
+    public void removeNoticeListener(DataListener<Notice> listener) { noticeListeners.remove(listener); }
 
-        // Initialize if null
-        if (userList == null) userList = new ArrayList<>();
-        if (courseList == null) courseList = new ArrayList<>();
-        if (routineList == null) routineList = new ArrayList<>();
-        if (noticeList == null) noticeList = new ArrayList<>();
+    // --- Record Keys (used to match logged updates / deletes on replay) ---
+    private static String routineKey(RoutineSlot slot) {
+        return slot.getSection() + "|" + slot.getDay() + "|" + slot.getTime() + "|"
+                + slot.getCourse().getCourseCode() + "|" + slot.getRoomNo() + "|" + slot.getTeacherName();
     }
 
-    // --- Getters ---
-    public ArrayList<User> getUserList() { return userList; }
-    public ArrayList<Course> getCourseList() { return courseList; }
-    public ArrayList<RoutineSlot> getRoutineList() { return routineList; }
-    public ArrayList<Notice> getNoticeList() { return noticeList; }
+    private static String noticeKey(Notice notice) {
+        return notice.getTimestamp() + "|" + notice.getSenderName() + "|"
+                + notice.getTargetSection() + "|" + notice.getTitle();
+    }
+
+    // Days are matched case-insensitively (same as the dashboards' "today only" filter)
+    private static String dayKey(String owner, String day) {
+        return owner + "|" + day.toLowerCase(Locale.ROOT);
+    }
+
+    // --- Getters (immutable snapshots, safe to keep and iterate on any thread) ---
+    public DataSnapshot<User> getUserList() { return userStore.list(); }
+    public DataSnapshot<Course> getCourseList() { return courseStore.list(); }
+    public DataSnapshot<RoutineSlot> getRoutineList() { return routineStore.list(); }
+    public DataSnapshot<Notice> getNoticeList() { return noticeStore.list(); }
+
+    // --- Lookups (primary-key index, O(1)) ---
+    public User findUser(String userId) {
+        return userStore.find(userId);
+    }
+
+    public Course findCourse(String courseCode) {
+        return courseStore.find(courseCode);
+    }
+
+    // --- Routine Queries (secondary indexes, no full scan) ---
+    public List<RoutineSlot> getRoutinesForSection(String section) {
+        synchronized (routineStore) {
+            buildRoutineIndexes();
+            return routinesBySection.get(section);
+        }
+    }
+
+    public List<RoutineSlot> getRoutinesForSection(String section, String day) {
+        synchronized (routineStore) {
+            buildRoutineIndexes();
+            return routinesBySectionDay.get(dayKey(section, day));
+        }
+    }
+
+    public List<RoutineSlot> getRoutinesForTeacher(String teacherName) {
+        synchronized (routineStore) {
+            buildRoutineIndexes();
+            return routinesByTeacher.get(teacherName);
+        }
+    }
+
+    public List<RoutineSlot> getRoutinesForTeacher(String teacherName, String day) {
+        synchronized (routineStore) {
+            buildRoutineIndexes();
+            return routinesByTeacherDay.get(dayKey(teacherName, day));
+        }
+    }
+
+    // Caller holds routineStore's lock (also for indexRoutine)
+    private void buildRoutineIndexes() {
+        if (routineIndexesBuilt) return;
+
+        List<RoutineSlot> slots = routineStore.list();
+        routinesBySection.rebuild(slots);
+        routinesByTeacher.rebuild(slots);
+        routinesBySectionDay.rebuild(slots);
+        routinesByTeacherDay.rebuild(slots);
+        routineIndexesBuilt = true;
+    }
+
+    private void indexRoutine(RoutineSlot slot, boolean add) {
+        if (!routineIndexesBuilt) return;
+
+        for (SecondaryIndex<RoutineSlot> index :
+                List.of(routinesBySection, routinesByTeacher, routinesBySectionDay, routinesByTeacherDay)) {
+            if (add) index.add(slot);
+            else index.remove(slot);
+        }
+    }
+
+    // --- Notice Feeds (newest first) ---
+    // Latest notices for a section, including the ones sent to "ALL SECTIONS"
+    public List<Notice> getLatestNoticesForSection(String section, int limit) {
+        synchronized (noticeStore) {
+            buildNoticeFeed();
+            return noticeFeed.forSection(section, 0, limit);
+        }
+    }
+
+    // Notices for a section posted after the given cursor (see getNoticeCursor)
+    public List<Notice> getNoticesForSectionSince(String section, long cursor) {
+        synchronized (noticeStore) {
+            buildNoticeFeed();
+            return noticeFeed.forSection(section, cursor, Integer.MAX_VALUE);
+        }
+    }
+
+    public List<Notice> getLatestNoticesBySender(String senderName, int limit) {
+        synchronized (noticeStore) {
+            buildNoticeFeed();
+            return noticeFeed.fromSender(senderName, 0, limit);
+        }
+    }
+
+    public List<Notice> getNoticesBySenderSince(String senderName, long cursor) {
+        synchronized (noticeStore) {
+            buildNoticeFeed();
+            return noticeFeed.fromSender(senderName, cursor, Integer.MAX_VALUE);
+        }
+    }
+
+    // Position of the newest notice so far; a feed read afterwards with this cursor
+    // returns only notices posted since.
+    public long getNoticeCursor() {
+        synchronized (noticeStore) {
+            buildNoticeFeed();
+            return noticeFeed.cursor();
+        }
+    }
+
+    // Caller holds noticeStore's lock
+    private void buildNoticeFeed() {
+        if (noticeFeedBuilt) return;
+
+        noticeFeed.rebuild(noticeStore.list());
+        noticeFeedBuilt = true;
+    }
 
     // --- Add Methods ---
-    public void addUser(User user) {
-        userList.add(user);
-        saveData(userList, USER_FILE);
+    // Returns false if the userId is already taken or the change could not be saved
+    public boolean addUser(User user) {
+        if (!userStore.add(user)) return false;
+
+        for (DataListener<User> listener : userListeners) listener.added(user);
+        return true;
     }
 
-    public void addCourse(Course course) {
-        courseList.add(course);
-        saveData(courseList, COURSE_FILE);
+    // Returns false if the course code is already taken or the change could not be saved
+    public boolean addCourse(Course course) {
+        if (!courseStore.add(course)) return false;
+
+        for (DataListener<Course> listener : courseListeners) listener.added(course);
+        return true;
     }
 
     public void addRoutineSlot(RoutineSlot slot) {
-        routineList.add(slot);
-        saveData(routineList, ROUTINE_FILE);
+        synchronized (routineStore) {
+            if (!routineStore.add(slot)) return;
+            indexRoutine(slot, true);
+        }
+        for (DataListener<RoutineSlot> listener : routineListeners) listener.added(slot);
     }
 
     // --- Add new notice ---
     public void addNotice(Notice notice) {
-        noticeList.add(notice);
-        saveData(noticeList, NOTICE_FILE);
+        synchronized (noticeStore) {
+            if (!noticeStore.add(notice)) return;
+            if (noticeFeedBuilt) noticeFeed.add(notice);
+        }
+        for (DataListener<Notice> listener : noticeListeners) listener.added(notice);
     }
 
     // --- Delete / Update Helpers ---
     public void deleteUser(User user) {
-        userList.remove(user);
-        saveData(userList, USER_FILE);
+        if (!userStore.remove(user)) return;
+
+        for (DataListener<User> listener : userListeners) listener.removed(user);
     }
 
-    public void updateUser(User oldUser, User newUser) {
-        int index = userList.indexOf(oldUser);
-        if (index != -1) {
-            userList.set(index, newUser);
-            saveData(userList, USER_FILE);
-        }
+    // Returns false if oldUser is gone, newUser's userId belongs to someone else or the
+    // change could not be saved
+    public boolean updateUser(User oldUser, User newUser) {
+        if (!userStore.update(oldUser, newUser)) return false;
+
+        for (DataListener<User> listener : userListeners) listener.updated(oldUser, newUser);
+        return true;
     }
 
     public void deleteCourse(Course course) {
-        courseList.remove(course);
-        saveData(courseList, COURSE_FILE);
+        if (!courseStore.remove(course)) return;
+
+        for (DataListener<Course> listener : courseListeners) listener.removed(course);
     }
 
     public void deleteRoutine(RoutineSlot slot) {
-        routineList.remove(slot);
-        saveData(routineList, ROUTINE_FILE);
+        synchronized (routineStore) {
+            if (!routineStore.remove(slot)) return;
+            indexRoutine(slot, false);
+        }
+        for (DataListener<RoutineSlot> listener : routineListeners) listener.removed(slot);
     }
 
     // --- Notice Delete Method ---
     public void deleteNotice(Notice notice) {
-        if (noticeList.remove(notice)) {
-            saveData(noticeList, NOTICE_FILE);
-            System.out.println("Notice deleted successfully.");
-        }
-    }
-
-    // --- Generic Save/Load Logic ---
-    private <T> void saveData(ArrayList<T> list, String fileName) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(fileName))) {
-            oos.writeObject(list);
-            // System.out.println("Saved: " + fileName); // Optional log
-        } catch (IOException e) {
-            System.err.println("Error saving " + fileName + ": " + e.getMessage());
-        }
-    }
-
-    private <T> ArrayList<T> loadData(String fileName) {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(fileName))) {
-            return (ArrayList<T>) ois.readObject();
-        } catch (FileNotFoundException e) {
-            return null;
-        } catch (IOException | ClassNotFoundException e) {
-            return null;
+        synchronized (noticeStore) {
+            if (!noticeStore.remove(notice)) return;
+            if (noticeFeedBuilt) noticeFeed.remove(notice);
         }
+        System.out.println("Notice deleted successfully.");
+        for (DataListener<Notice> listener : noticeListeners) listener.removed(notice);
     }
-}
\ No newline at end of file
+}
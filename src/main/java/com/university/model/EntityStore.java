@@ -0,0 +1,514 @@
+package com.university.model;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Storage for one entity type: the .dat snapshot plus its append-only change log.
+// On load the snapshot is read and the logs are replayed on top of it.
+//
+// Once enough changes are logged, a background compaction writes a fresh snapshot
+// (temp file -> fsync -> atomic rename) and drops the logs it covers, so the
+// .dat file is never truncated in place.
+//
+// Snapshots and log records are encoded with the store's RecordCodec (see SnapshotFile);
+// files still in Java serialization format are migrated on first load.
+//
+// A store opened as "mapped" memory-maps its snapshot and decodes records only when
+// they are read (LazyRecordList), so startup cost does not grow with the table size.
+// Not on Windows (see MappedSnapshot.SUPPORTED), where a compaction could not replace
+// the mapped file.
+//
+// Stores with a unique key keep a primary-key index: find() is O(1) and add/update
+// refuse a key that is already taken.
+//
+// Readers never see the working list: list() returns an immutable DataSnapshot. A change
+// bumps the version and drops the published snapshot; the next reader publishes a fresh
+// copy (copy on first read after a write), so a burst of changes costs one copy, and
+// reads in between changes are a single volatile load.
+//
+// Write-behind: a change is applied in memory at once and its log record is buffered;
+// a background flusher writes everything buffered within FLUSH_DELAY_MS as one group
+// commit (one write + fsync). flush() forces it out, e.g. on logout and shutdown.
+//
+// A change is only applied once its record is logged (written, or buffered): if that
+// fails, the mutation returns false and memory is left as it was. A group commit that
+// fails keeps its records buffered and marks the store failing; it then refuses every
+// change until a flush gets the buffered ones out, so no more pile up unsaved.
+class EntityStore<T> {
+
+    // Logged changes before a background compaction is scheduled
+    private static final int COMPACT_THRESHOLD = 500;
+
+    // Longest a logged change may wait in memory before it is written, in milliseconds
+    // (-Dclasspilot.db.flushDelayMs, 0 = write every change immediately)
+    static final long FLUSH_DELAY_MS = Math.max(0, Long.getLong("classpilot.db.flushDelayMs", 50));
+
+    // Group commits for every store run here, off the JavaFX thread
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "db-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // One background thread shared by all stores, so compaction never runs on the JavaFX thread
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "db-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String fileName;
+    private final String logName;
+    private final RecordCodec<T> codec;
+    private final Function<T, String> keyOf;
+    private final boolean uniqueKey;
+    private final boolean mapped;
+    private List<T> list = new ArrayList<>(); // working copy, guarded by this
+    private long version = 0;
+    private volatile DataSnapshot<T> published;
+    private ChangeLog log;
+    private boolean compactionPending = false;
+    private boolean flushScheduled = false;
+    private boolean closed = false; // after close() every change is written straight away
+    private boolean writeFailed = false; // the last flush failed; no changes until one succeeds
+
+    // Primary-key index (unique-key stores only). For an eagerly loaded store it holds every
+    // key; for a mapped store only keys changed since the snapshot (null = deleted), the
+    // rest are found through the snapshot's on-disk key table.
+    private final HashMap<String, T> keyIndex = new HashMap<>();
+    private MappedSnapshot<T> snapshot;
+
+    EntityStore(String fileName, RecordCodec<T> codec, Function<T, String> keyOf, boolean uniqueKey, boolean mapped) {
+        this.fileName = fileName;
+        // users.dat -> users.log (only the extension: the directory may contain ".dat" too)
+        this.logName = (fileName.endsWith(".dat") ? fileName.substring(0, fileName.length() - 4) : fileName) + ".log";
+        this.codec = codec;
+        this.keyOf = keyOf;
+        this.uniqueKey = uniqueKey;
+        this.mapped = mapped;
+        recover();
+    }
+
+    DataSnapshot<T> list() {
+        DataSnapshot<T> current = published;
+        if (current != null) return current;
+
+        synchronized (this) {
+            if (published == null) {
+                List<T> copy = (list instanceof LazyRecordList)
+                        ? ((LazyRecordList<T>) list).copy()
+                        : new ArrayList<>(list);
+                published = new DataSnapshot<>(copy, version);
+            }
+            return published;
+        }
+    }
+
+    // Called under the lock after every change to the working list
+    private void changed() {
+        version++;
+        published = null;
+    }
+
+    synchronized T find(String key) {
+        if (!uniqueKey) {
+            int index = indexOfKey(key);
+            return index == -1 ? null : list.get(index);
+        }
+        if (keyIndex.containsKey(key)) return keyIndex.get(key);
+        if (snapshot != null) {
+            int ordinal = snapshot.findOrdinal(key, keyOf);
+            if (ordinal != -1) return snapshot.get(ordinal);
+        }
+        return null;
+    }
+
+    // --- Mutations (one log record, then memory; false if the record could not be logged) ---
+    synchronized boolean add(T item) {
+        String key = keyOf.apply(item);
+        if (uniqueKey && find(key) != null) return false;
+        if (!append(ChangeLog.ADD, key, list.size(), item)) return false;
+
+        list.add(item);
+        changed();
+        index(key, item);
+        logged();
+        return true;
+    }
+
+    synchronized boolean update(T oldItem, T newItem) {
+        String oldKey = keyOf.apply(oldItem);
+        String newKey = keyOf.apply(newItem);
+        if (uniqueKey) {
+            T owner = find(newKey);
+            if (owner != null && owner != oldItem) return false;
+        }
+
+        int index = list.indexOf(oldItem);
+        if (index == -1) return false;
+        if (!append(ChangeLog.UPDATE, oldKey, index, newItem)) return false;
+
+        list.set(index, newItem);
+        changed();
+        unindex(oldKey, oldItem);
+        index(newKey, newItem);
+        logged();
+        return true;
+    }
+
+    synchronized boolean remove(T item) {
+        int index = list.indexOf(item);
+        if (index == -1) return false;
+        String key = keyOf.apply(item);
+        if (!append(ChangeLog.DELETE, key, index, null)) return false;
+
+        list.remove(index);
+        changed();
+        unindex(key, item);
+        logged();
+        return true;
+    }
+
+    // --- Index Helpers ---
+    private void index(String key, T item) {
+        if (uniqueKey) keyIndex.put(key, item);
+    }
+
+    private void unindex(String key, T item) {
+        if (uniqueKey && find(key) == item) keyIndex.put(key, null);
+    }
+
+    private void indexAll() {
+        if (!uniqueKey) return;
+        for (T item : list) {
+            keyIndex.put(keyOf.apply(item), item);
+        }
+    }
+
+    // --- Log Helpers (caller holds the lock) ---
+    // position: the item's index in the list (replay finds it there, see ChangeLog).
+    // After close() the record is written before this returns. False if it is not logged.
+    private boolean append(byte op, String key, int position, T item) {
+        if (writeFailed && !flush()) return false; // retries the buffered records first
+        try {
+            log.append(op, key, position, item == null ? new byte[0] : encode(item), closed);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error logging change to " + fileName + ", not applied: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // After a change is applied: schedules its group commit and, when due, a compaction
+    private void logged() {
+        if (!closed && FLUSH_DELAY_MS > 0 && !flushScheduled) {
+            // The first change of a burst starts the clock; the rest join its commit
+            flushScheduled = true;
+            FLUSHER.schedule(this::flush, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+        if (log.getRecordCount() >= COMPACT_THRESHOLD) {
+            scheduleCompaction();
+        }
+    }
+
+    // ==========================
+    // WRITE-BEHIND (group commit)
+    // ==========================
+    // Writes every buffered change to disk. Returns false if the write failed; the changes
+    // then stay buffered, and the store refuses new ones until a flush succeeds.
+    boolean flush() {
+        synchronized (this) {
+            flushScheduled = false;
+        }
+        boolean ok;
+        try {
+            log.flush();
+            ok = true;
+        } catch (IOException e) {
+            System.err.println("Error writing changes to " + fileName + ": " + e.getMessage());
+            ok = false;
+        }
+        synchronized (this) {
+            writeFailed = !ok;
+        }
+        return ok;
+    }
+
+    boolean close() {
+        synchronized (this) {
+            closed = true;
+        }
+        return flush();
+    }
+
+    // Group commits written since the store was opened
+    synchronized int getCommitCount() {
+        return log.getCommitCount();
+    }
+
+    private void apply(ChangeLog.Entry entry) {
+        switch (entry.op) {
+            case ChangeLog.ADD: {
+                T item = decode(entry);
+                if (item == null) break;
+                list.add(item);
+                index(keyOf.apply(item), item);
+                break;
+            }
+            case ChangeLog.UPDATE: {
+                T item = decode(entry);
+                if (item == null) break;
+                int index = positionOf(entry);
+                if (index != -1) {
+                    unindex(entry.key, list.get(index));
+                    list.set(index, item);
+                } else {
+                    list.add(item);
+                }
+                index(keyOf.apply(item), item);
+                break;
+            }
+            case ChangeLog.DELETE: {
+                int index = positionOf(entry);
+                if (index != -1) {
+                    unindex(entry.key, list.get(index));
+                    list.remove(index);
+                }
+                break;
+            }
+        }
+    }
+
+    // Replay: the logged position, if the record there still has the logged key. The list
+    // is the same as when the change was made (snapshot + the same changes in order), so
+    // this is the exact record even where keys repeat; the key search is for older logs,
+    // and for a list that differs because an unreadable record was skipped.
+    private int positionOf(ChangeLog.Entry entry) {
+        int position = entry.position;
+        if (position >= 0 && position < list.size() && keyOf.apply(list.get(position)).equals(entry.key)) {
+            return position;
+        }
+        return positionOf(entry.key);
+    }
+
+    // Position of the record with this key: index lookup plus an identity search
+    // (which decodes nothing) for unique keys, a key-comparing scan otherwise.
+    private int positionOf(String key) {
+        if (!uniqueKey) return indexOfKey(key);
+
+        T item = find(key);
+        return item == null ? -1 : list.indexOf(item);
+    }
+
+    private int indexOfKey(String key) {
+        for (int i = 0; i < list.size(); i++) {
+            if (keyOf.apply(list.get(i)).equals(key)) return i;
+        }
+        return -1;
+    }
+
+    private byte[] encode(T item) throws IOException {
+        RecordOutput out = new RecordOutput();
+        codec.write(out, item);
+        return out.toByteArray();
+    }
+
+    private T decode(ChangeLog.Entry entry) {
+        try {
+            if (entry.schemaVersion == 0) {
+                return LegacyMigrator.readRecord(entry.payload);
+            }
+            return codec.read(new RecordInput(ByteBuffer.wrap(entry.payload)), entry.schemaVersion);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Skipping unreadable log record in " + fileName + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // ==========================
+    // RECOVERY (startup)
+    // ==========================
+    // 1. A leftover .tmp is a snapshot that never got renamed into place -> discard it.
+    // 2. Load the snapshot and the log generation it covers (migrating a legacy file first).
+    // 3. Replay rotated logs newer than the snapshot, then the active log (torn tail is cut off).
+    //
+    // Rotated logs mean an unfinished compaction. The snapshot is then read eagerly instead
+    // of mapped, so the compaction that follows can replace the file on every platform.
+    private void recover() {
+        File tmp = new File(fileName + ".tmp");
+        if (tmp.exists() && !tmp.delete()) {
+            System.err.println("Could not remove stale " + tmp);
+        }
+
+        long snapshotGeneration = loadSnapshot(mapped && MappedSnapshot.SUPPORTED && rotatedLogs().isEmpty());
+
+        // An active log in an older format is replayed like a rotated one; new records go to a fresh log
+        File active = new File(logName);
+        if (active.length() > 0 && !ChangeLog.isCurrentFormat(active, codec.schemaVersion())) {
+            long generation = ChangeLog.readGeneration(active);
+            if (generation > 0) active.renameTo(new File(logName + "." + generation));
+        }
+        long nextGeneration = snapshotGeneration + 1;
+        boolean needsCompaction = false;
+
+        for (Map.Entry<Long, File> rotated : rotatedLogs().entrySet()) {
+            long generation = rotated.getKey();
+            File file = rotated.getValue();
+            if (generation <= snapshotGeneration) {
+                file.delete(); // already part of the snapshot
+                continue;
+            }
+            try {
+                ChangeLog.replay(file, false, this::apply);
+                needsCompaction = true;
+            } catch (IOException e) {
+                System.err.println("Error replaying " + file + ": " + e.getMessage());
+            }
+            nextGeneration = Math.max(nextGeneration, generation + 1);
+        }
+
+        long activeGeneration = active.exists() ? ChangeLog.readGeneration(active) : -1;
+        boolean replayActive = activeGeneration > snapshotGeneration;
+        if (active.exists() && !replayActive) {
+            if (active.length() > 0 && activeGeneration == -1) {
+                System.err.println("Unreadable log header, moving aside: " + active);
+                active.renameTo(new File(logName + ".corrupt"));
+            } else {
+                active.delete(); // stale or empty log
+            }
+        }
+        if (replayActive) {
+            nextGeneration = Math.max(nextGeneration, activeGeneration);
+        }
+
+        log = new ChangeLog(logName, nextGeneration, codec.schemaVersion(), FLUSH_DELAY_MS > 0);
+        if (replayActive) {
+            try {
+                log.replay(this::apply);
+            } catch (IOException e) {
+                System.err.println("Error replaying log for " + fileName + ": " + e.getMessage());
+            }
+        }
+
+        if (needsCompaction || log.getRecordCount() >= COMPACT_THRESHOLD) {
+            scheduleCompaction();
+        }
+    }
+
+    // Rotated logs ("users.log.<generation>") sorted by generation
+    private TreeMap<Long, File> rotatedLogs() {
+        TreeMap<Long, File> logs = new TreeMap<>();
+        File logFile = new File(logName).getAbsoluteFile();
+        String prefix = logFile.getName() + ".";
+        File[] files = logFile.getParentFile().listFiles((dir, name) -> name.startsWith(prefix));
+        if (files == null) return logs;
+
+        for (File file : files) {
+            try {
+                logs.put(Long.parseLong(file.getName().substring(prefix.length())), file);
+            } catch (NumberFormatException ignored) {
+                // not a rotated log (e.g. ".corrupt")
+            }
+        }
+        return logs;
+    }
+
+    // ==========================
+    // COMPACTION (background)
+    // ==========================
+    private synchronized void scheduleCompaction() {
+        if (compactionPending) return;
+        compactionPending = true;
+        COMPACTOR.execute(this::compact);
+    }
+
+    // Waits for the compactions scheduled so far (tests: before their data directory goes)
+    static void awaitCompactions() throws InterruptedException, ExecutionException {
+        COMPACTOR.submit(() -> { }).get();
+    }
+
+    private void compact() {
+        List<T> copy;
+        long coveredGeneration;
+
+        // Take the list and start a new log generation in one step, so every change
+        // is either in this snapshot or in the new log - never lost in between.
+        synchronized (this) {
+            copy = list();
+            coveredGeneration = log.getGeneration();
+            try {
+                log.rotate();
+            } catch (IOException e) {
+                System.err.println("Error rotating log for " + fileName + ": " + e.getMessage());
+                compactionPending = false;
+                return;
+            }
+        }
+
+        try {
+            writeSnapshot(copy, coveredGeneration);
+            for (Map.Entry<Long, File> rotated : rotatedLogs().headMap(coveredGeneration, true).entrySet()) {
+                rotated.getValue().delete();
+            }
+        } catch (IOException e) {
+            // The rotated log stays on disk and is replayed on the next start.
+            System.err.println("Error compacting " + fileName + ": " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                compactionPending = false;
+            }
+        }
+    }
+
+    // ==========================
+    // SNAPSHOT FILE
+    // ==========================
+    private void writeSnapshot(List<T> items, long coveredGeneration) throws IOException {
+        SnapshotFile.write(new File(fileName), codec, items, coveredGeneration, uniqueKey ? keyOf : null);
+    }
+
+    // Loads the snapshot into the list and returns the log generation it covers
+    // (0 if there is no snapshot yet). A mapped unique-key store needs the snapshot's
+    // key table; older files without one are read eagerly until the next compaction.
+    private long loadSnapshot(boolean lazy) {
+        File file = new File(fileName);
+        if (!file.exists()) return 0;
+
+        try {
+            long coveredGeneration;
+            if (LegacyMigrator.isLegacy(file)) {
+                coveredGeneration = LegacyMigrator.migrate(file, codec, list, uniqueKey ? keyOf : null);
+            } else {
+                MappedSnapshot<T> mappedSnapshot = lazy ? MappedSnapshot.open(file, codec) : null;
+                if (mappedSnapshot != null && (!uniqueKey || mappedSnapshot.hasKeyTable())) {
+                    snapshot = mappedSnapshot;
+                    list = new LazyRecordList<>(mappedSnapshot);
+                    return mappedSnapshot.getCoveredGeneration();
+                }
+                coveredGeneration = SnapshotFile.read(file, codec, list);
+            }
+            indexAll();
+            return coveredGeneration;
+        } catch (IOException | RuntimeException e) {
+            // Never let a later compaction overwrite a file we could not read
+            File aside = new File(fileName + ".unreadable");
+            System.err.println("Error loading " + fileName + " (moved to " + aside + "): " + e.getMessage());
+            file.renameTo(aside);
+            snapshot = null;
+            list = new ArrayList<>();
+            keyIndex.clear();
+            return 0;
+        }
+    }
+}
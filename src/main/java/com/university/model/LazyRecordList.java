@@ -0,0 +1,126 @@
+package com.university.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+// Mutable list on top of a MappedSnapshot; elements are decoded only when read.
+// Until the first change the list is simply snapshot ordinals 0..n-1. After that each
+// position holds either a snapshot ordinal or (ordinal -1) an element kept in memory.
+final class LazyRecordList<T> extends AbstractList<T> implements RandomAccess {
+
+    private final MappedSnapshot<T> snapshot;
+    private int[] ordinals;   // null while the list still matches the snapshot
+    private Object[] values;
+    private int size;
+
+    LazyRecordList(MappedSnapshot<T> snapshot) {
+        this.snapshot = snapshot;
+        this.size = snapshot.size();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        Objects.checkIndex(index, size);
+        if (ordinals == null) return snapshot.get(index);
+
+        int ordinal = ordinals[index];
+        return ordinal >= 0 ? snapshot.get(ordinal) : (T) values[index];
+    }
+
+    // Entities use identity equality, so an element that was never decoded cannot be o:
+    // only decoded elements are compared and the search itself decodes nothing.
+    @Override
+    public int indexOf(Object o) {
+        if (o == null) return -1;
+        for (int i = 0; i < size; i++) {
+            Object element;
+            if (ordinals == null) element = snapshot.peek(i);
+            else element = ordinals[i] >= 0 ? snapshot.peek(ordinals[i]) : values[i];
+            if (element != null && o.equals(element)) return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index == -1) return false;
+        remove(index);
+        return true;
+    }
+
+    @Override
+    public T set(int index, T element) {
+        T old = get(index);
+        ensureCapacity(size);
+        ordinals[index] = -1;
+        values[index] = element;
+        return old;
+    }
+
+    @Override
+    public void add(int index, T element) {
+        Objects.checkIndex(index, size + 1);
+        ensureCapacity(size + 1);
+        System.arraycopy(ordinals, index, ordinals, index + 1, size - index);
+        System.arraycopy(values, index, values, index + 1, size - index);
+        ordinals[index] = -1;
+        values[index] = element;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public T remove(int index) {
+        T old = get(index);
+        ensureCapacity(size);
+        System.arraycopy(ordinals, index + 1, ordinals, index, size - index - 1);
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        values[size] = null;
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        ordinals = new int[0];
+        values = new Object[0];
+        size = 0;
+        modCount++;
+    }
+
+    // Independent copy for a DataSnapshot: O(1) while the list still matches the file,
+    // otherwise a copy of the two arrays. Shares the snapshot's decode cache.
+    LazyRecordList<T> copy() {
+        LazyRecordList<T> copy = new LazyRecordList<>(snapshot);
+        copy.size = size;
+        if (ordinals != null) {
+            copy.ordinals = Arrays.copyOf(ordinals, size);
+            copy.values = Arrays.copyOf(values, size);
+        }
+        return copy;
+    }
+
+    // Switches from the implicit 0..n-1 mapping to explicit arrays on the first change
+    private void ensureCapacity(int capacity) {
+        if (ordinals == null) {
+            int length = Math.max(capacity, size + (size >> 4) + 16);
+            ordinals = new int[length];
+            for (int i = 0; i < size; i++) ordinals[i] = i;
+            values = new Object[length];
+        } else if (capacity > ordinals.length) {
+            int length = Math.max(capacity, ordinals.length + (ordinals.length >> 1));
+            ordinals = Arrays.copyOf(ordinals, length);
+            values = Arrays.copyOf(values, length);
+        }
+    }
+}
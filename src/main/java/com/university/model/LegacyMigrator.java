@@ -0,0 +1,65 @@
+package com.university.model;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+// One-time conversion of .dat files and change logs written with Java serialization
+// (ObjectOutputStream of a whole ArrayList) to the binary SnapshotFile format.
+final class LegacyMigrator {
+
+    private LegacyMigrator() {}
+
+    // Java serialization streams start with 0xACED
+    static boolean isLegacy(File file) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readUnsignedShort() == 0xACED;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Loads the legacy list, keeps the original as "<file>.legacy" and rewrites the file
+    // in the binary format. Returns the log generation the snapshot covers.
+    static <T> long migrate(File file, RecordCodec<T> codec, List<T> into, Function<T, String> keyOf) throws IOException {
+        long coveredGeneration;
+        ArrayList<T> items;
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            items = readList(ois);
+            try {
+                coveredGeneration = ois.readLong();
+            } catch (EOFException e) {
+                coveredGeneration = 0; // written before change logs existed
+            }
+        }
+
+        Files.copy(file.toPath(), new File(file.getPath() + ".legacy").toPath(), StandardCopyOption.REPLACE_EXISTING);
+        SnapshotFile.write(file, codec, items, coveredGeneration, keyOf);
+        System.out.println("Migrated " + file + " to the binary format (" + items.size() + " records).");
+
+        into.addAll(items);
+        return coveredGeneration;
+    }
+
+    // Payload of a log record written before logs used the binary codecs
+    @SuppressWarnings("unchecked")
+    static <T> T readRecord(byte[] payload) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+            return (T) ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ArrayList<T> readList(ObjectInputStream ois) throws IOException {
+        try {
+            return (ArrayList<T>) ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.university.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+// Read-only, memory-mapped view of an indexed (format 2) snapshot.
+// Opening it maps the file and reads the trailer - nothing else. Records and the
+// dictionary strings they use are decoded on first access and cached, so a record
+// is decoded at most once and always comes back as the same object.
+// With a key table (format 3) a record can also be found by primary key in O(1).
+final class MappedSnapshot<T> {
+
+    // Windows refuses to replace a file while it is mapped, and Java cannot unmap one on
+    // demand (only the garbage collector does): a store compacting at runtime could never
+    // rename its new snapshot into place. Stores there read their snapshot eagerly.
+    static final boolean SUPPORTED = !System.getProperty("os.name", "").startsWith("Windows");
+
+    private final File file;
+    private final ByteBuffer buf;
+    private final RecordCodec<T> codec;
+    private final int schemaVersion;
+    private final long coveredGeneration;
+
+    private final int stringCount;
+    private final int stringIndexOffset;
+    private final int recordCount;
+    private final int recordIndexOffset;
+    private final int keyTableOffset;
+    private final int keyTableCapacity; // 0 = no key table
+
+    private final AtomicReferenceArray<T> records;
+    private final AtomicReferenceArray<String> strings;
+
+    private MappedSnapshot(File file, ByteBuffer buf, RecordCodec<T> codec, int schemaVersion) {
+        this.file = file;
+        this.buf = buf;
+        this.codec = codec;
+        this.schemaVersion = schemaVersion;
+        this.coveredGeneration = SnapshotFile.readCoveredGeneration(buf);
+
+        int formatVersion = SnapshotFile.readFormatVersion(buf);
+        int trailer = buf.limit() - SnapshotFile.trailerSize(formatVersion);
+        this.stringCount = buf.getInt(trailer);
+        this.stringIndexOffset = buf.getInt(trailer + 4);
+        this.recordCount = buf.getInt(trailer + 8);
+        this.recordIndexOffset = buf.getInt(trailer + 12);
+        this.keyTableOffset = formatVersion >= 3 ? buf.getInt(trailer + 16) : 0;
+        this.keyTableCapacity = formatVersion >= 3 ? buf.getInt(trailer + 20) : 0;
+
+        this.records = new AtomicReferenceArray<>(recordCount);
+        this.strings = new AtomicReferenceArray<>(stringCount);
+    }
+
+    // Returns null if the file has no offset index (older format) and has to be read eagerly.
+    static <T> MappedSnapshot<T> open(File file, RecordCodec<T> codec) throws IOException {
+        ByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int schemaVersion = SnapshotFile.readHeader(buf, file, codec);
+        if (!SnapshotFile.hasIndex(buf)) return null;
+
+        return new MappedSnapshot<>(file, buf, codec, schemaVersion);
+    }
+
+    int size() { return recordCount; }
+    long getCoveredGeneration() { return coveredGeneration; }
+    boolean hasKeyTable() { return keyTableCapacity > 0; }
+
+    // Already-decoded record or null; never decodes
+    T peek(int ordinal) {
+        return records.get(ordinal);
+    }
+
+    // Ordinal of the record with this primary key, or -1. Only records whose
+    // stored key hash matches are decoded to compare the key.
+    int findOrdinal(String key, Function<T, String> keyOf) {
+        if (keyTableCapacity == 0) return -1;
+
+        int hash = SnapshotFile.keyHash(key);
+        int slot = hash & (keyTableCapacity - 1);
+        while (true) {
+            int position = keyTableOffset + 8 * slot;
+            int entry = buf.getInt(position + 4);
+            if (entry == 0) return -1;
+
+            if (buf.getInt(position) == hash && key.equals(keyOf.apply(get(entry - 1)))) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & (keyTableCapacity - 1);
+        }
+    }
+
+    T get(int ordinal) {
+        T item = records.get(ordinal);
+        if (item != null) return item;
+
+        // Two threads may decode the same record; only the first result is kept
+        records.compareAndSet(ordinal, null, decode(ordinal));
+        return records.get(ordinal);
+    }
+
+    private T decode(int ordinal) {
+        ByteBuffer view = buf.duplicate();
+        view.position(buf.getInt(recordIndexOffset + 4 * ordinal));
+        try {
+            return codec.read(new RecordInput(view, this::string), schemaVersion);
+        } catch (IOException | RuntimeException e) {
+            throw new UncheckedIOException(new IOException("Corrupt record " + ordinal + " in " + file, e));
+        }
+    }
+
+    private String string(int id) {
+        if (id < 0 || id >= stringCount) return null;
+
+        String s = strings.get(id);
+        if (s != null) return s;
+
+        ByteBuffer view = buf.duplicate();
+        view.position(buf.getInt(stringIndexOffset + 4 * id));
+        try {
+            strings.compareAndSet(id, null, new RecordInput(view).readRawString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return strings.get(id);
+    }
+}
@@ -5,6 +5,8 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
 public class Notice implements Serializable {
+
+    private static final long serialVersionUID = -2077306720753073951L;
     private String title;
     private String content;
     private String targetSection;
@@ -19,6 +21,15 @@ public class Notice implements Serializable {
         this.timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd MMM, hh:mm a"));
     }
 
+    // Restores a stored notice with its original timestamp
+    Notice(String title, String content, String targetSection, String senderName, String timestamp) {
+        this.title = title;
+        this.content = content;
+        this.targetSection = targetSection;
+        this.senderName = senderName;
+        this.timestamp = timestamp;
+    }
+
     // Getters
     public String getTitle() { return title; }
     public String getContent() { return content; }
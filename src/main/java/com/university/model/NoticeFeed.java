@@ -0,0 +1,118 @@
+package com.university.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+// Notice feeds per target section and per sender, newest first.
+//
+// Every notice gets an increasing sequence number when it is indexed (store order is
+// posting order), and each bucket is kept sorted by it. A feed query walks the bucket
+// from the end and stops after `limit` notices or at the cursor, so it costs what is
+// returned rather than the size of the notice history.
+class NoticeFeed {
+
+    static final String ALL_SECTIONS = "ALL SECTIONS";
+
+    // --- One indexed notice ---
+    private static final class Entry {
+        final long seq;
+        final Notice notice;
+
+        Entry(long seq, Notice notice) {
+            this.seq = seq;
+            this.notice = notice;
+        }
+    }
+
+    private final HashMap<String, ArrayList<Entry>> bySection = new HashMap<>();
+    private final HashMap<String, ArrayList<Entry>> bySender = new HashMap<>();
+    private final IdentityHashMap<Notice, Long> seqOf = new IdentityHashMap<>();
+    private long lastSeq = 0;
+
+    // Sequence number of the newest notice so far (0 = none); pass it back to the
+    // "since" queries to get only what was posted after it.
+    long cursor() { return lastSeq; }
+
+    void add(Notice notice) {
+        Entry entry = new Entry(++lastSeq, notice);
+        seqOf.put(notice, entry.seq);
+        bySection.computeIfAbsent(notice.getTargetSection(), k -> new ArrayList<>()).add(entry);
+        bySender.computeIfAbsent(notice.getSenderName(), k -> new ArrayList<>()).add(entry);
+    }
+
+    void remove(Notice notice) {
+        Long seq = seqOf.remove(notice);
+        if (seq == null) return;
+
+        removeEntry(bySection, notice.getTargetSection(), seq);
+        removeEntry(bySender, notice.getSenderName(), seq);
+    }
+
+    void rebuild(List<Notice> notices) {
+        bySection.clear();
+        bySender.clear();
+        seqOf.clear();
+        for (Notice notice : notices) add(notice);
+    }
+
+    // Buckets are sorted by seq, so the entry is found by binary search
+    private static void removeEntry(HashMap<String, ArrayList<Entry>> index, String key, long seq) {
+        ArrayList<Entry> bucket = index.get(key);
+        if (bucket == null) return;
+
+        int low = 0, high = bucket.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midSeq = bucket.get(mid).seq;
+            if (midSeq < seq) low = mid + 1;
+            else if (midSeq > seq) high = mid - 1;
+            else {
+                bucket.remove(mid);
+                break;
+            }
+        }
+        if (bucket.isEmpty()) index.remove(key);
+    }
+
+    // --- Queries (newest first, only notices with seq > after) ---
+
+    // Notices for one section, merged with the ones sent to every section
+    List<Notice> forSection(String section, long after, int limit) {
+        if (section.equals(ALL_SECTIONS)) {
+            return latest(bySection.get(ALL_SECTIONS), null, after, limit);
+        }
+        return latest(bySection.get(section), bySection.get(ALL_SECTIONS), after, limit);
+    }
+
+    List<Notice> fromSender(String sender, long after, int limit) {
+        return latest(bySender.get(sender), null, after, limit);
+    }
+
+    // Walks one or two buckets backwards, always taking the higher seq first
+    private static List<Notice> latest(ArrayList<Entry> first, ArrayList<Entry> second, long after, int limit) {
+        int i = (first == null) ? -1 : first.size() - 1;
+        int j = (second == null) ? -1 : second.size() - 1;
+        if (i < 0 && j < 0) return Collections.emptyList();
+
+        ArrayList<Notice> result = new ArrayList<>(Math.min(limit, i + j + 2));
+        while (result.size() < limit) {
+            Entry a = (i >= 0) ? first.get(i) : null;
+            Entry b = (j >= 0) ? second.get(j) : null;
+            Entry next;
+            if (a == null && b == null) break;
+            if (b == null || (a != null && a.seq > b.seq)) {
+                next = a;
+                i--;
+            } else {
+                next = b;
+                j--;
+            }
+            if (next.seq <= after) break;
+            result.add(next.notice);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,17 @@
+package com.university.model;
+
+import java.io.IOException;
+
+// Binary encoding of one entity type, used by both the .dat snapshots and the change logs.
+// Each file stores the codec's entity type and schema version in its header, so a codec
+// can keep reading records written by older schema versions.
+interface RecordCodec<T> {
+
+    byte entityType();
+
+    int schemaVersion();
+
+    void write(RecordOutput out, T item) throws IOException;
+
+    T read(RecordInput in, int schemaVersion) throws IOException;
+}
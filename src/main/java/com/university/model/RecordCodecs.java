@@ -0,0 +1,150 @@
+package com.university.model;
+
+import java.io.IOException;
+import java.util.function.Function;
+
+// Binary codecs for every entity type stored by DatabaseService.
+// Bump a codec's schema version when its layout changes and keep reading the old one.
+final class RecordCodecs {
+
+    // Entity type ids (stored in file headers)
+    static final byte USER = 1;
+    static final byte COURSE = 2;
+    static final byte ROUTINE_SLOT = 3;
+    static final byte NOTICE = 4;
+
+    private RecordCodecs() {}
+
+    // --- User (Student / Teacher / Admin) ---
+    // Layout: [kind][userId][password][fullName][batch | designation]
+    static final RecordCodec<User> USERS = new RecordCodec<>() {
+        private static final int STUDENT = 1;
+        private static final int TEACHER = 2;
+        private static final int ADMIN = 3;
+
+        @Override public byte entityType() { return USER; }
+        @Override public int schemaVersion() { return 1; }
+
+        @Override
+        public void write(RecordOutput out, User user) throws IOException {
+            if (user instanceof Student) {
+                out.writeByte(STUDENT);
+            } else if (user instanceof Teacher) {
+                out.writeByte(TEACHER);
+            } else if (user instanceof Admin) {
+                out.writeByte(ADMIN);
+            } else {
+                throw new IOException("Unknown user type: " + user.getClass().getName());
+            }
+
+            out.writeString(user.getUserId());
+            out.writeString(user.getPassword());
+            out.writeString(user.getFullName());
+
+            if (user instanceof Student) {
+                out.writeString(((Student) user).getBatch());
+            } else if (user instanceof Teacher) {
+                out.writeString(((Teacher) user).getDesignation());
+            }
+        }
+
+        @Override
+        public User read(RecordInput in, int schemaVersion) throws IOException {
+            int kind = in.readByte();
+            String userId = in.readString();
+            String password = in.readString();
+            String fullName = in.readString();
+
+            switch (kind) {
+                case STUDENT: return new Student(userId, password, fullName, in.readString());
+                case TEACHER: return new Teacher(userId, password, fullName, in.readString());
+                case ADMIN: return new Admin(userId, password, fullName);
+                default: throw new IOException("Unknown user kind: " + kind);
+            }
+        }
+    };
+
+    // --- Course ---
+    // Layout: [courseCode][courseTitle][credits]
+    static final RecordCodec<Course> COURSES = new RecordCodec<>() {
+        @Override public byte entityType() { return COURSE; }
+        @Override public int schemaVersion() { return 1; }
+
+        @Override
+        public void write(RecordOutput out, Course course) {
+            out.writeString(course.getCourseCode());
+            out.writeString(course.getCourseTitle());
+            out.writeDouble(course.getCredits());
+        }
+
+        @Override
+        public Course read(RecordInput in, int schemaVersion) throws IOException {
+            return new Course(in.readString(), in.readString(), in.readDouble());
+        }
+    };
+
+    // --- Routine Slot ---
+    // Layout: [day][time][roomNo][teacherName][section][courseCode][courseTitle][credits]
+    // The course is referenced by code: on load the slot shares the live Course with that
+    // code. Title and credits are dictionary ids / 8 bytes and only matter for slots whose
+    // course has been deleted since.
+    static RecordCodec<RoutineSlot> routineSlots(Function<String, Course> courseByCode) {
+        return new RecordCodec<>() {
+            @Override public byte entityType() { return ROUTINE_SLOT; }
+            @Override public int schemaVersion() { return 1; }
+
+            @Override
+            public void write(RecordOutput out, RoutineSlot slot) {
+                out.writeString(slot.getDay());
+                out.writeString(slot.getTime());
+                out.writeString(slot.getRoomNo());
+                out.writeString(slot.getTeacherName());
+                out.writeString(slot.getSection());
+
+                Course course = slot.getCourse();
+                out.writeString(course.getCourseCode());
+                out.writeString(course.getCourseTitle());
+                out.writeDouble(course.getCredits());
+            }
+
+            @Override
+            public RoutineSlot read(RecordInput in, int schemaVersion) throws IOException {
+                String day = in.readString();
+                String time = in.readString();
+                String roomNo = in.readString();
+                String teacherName = in.readString();
+                String section = in.readString();
+
+                String code = in.readString();
+                String title = in.readString();
+                double credits = in.readDouble();
+
+                Course course = courseByCode.apply(code);
+                if (course == null) course = new Course(code, title, credits);
+
+                return new RoutineSlot(day, time, roomNo, course, teacherName, section);
+            }
+        };
+    }
+
+    // --- Notice ---
+    // Layout: [title][content][targetSection][senderName][timestamp]
+    static final RecordCodec<Notice> NOTICES = new RecordCodec<>() {
+        @Override public byte entityType() { return NOTICE; }
+        @Override public int schemaVersion() { return 1; }
+
+        @Override
+        public void write(RecordOutput out, Notice notice) {
+            out.writeString(notice.getTitle());
+            out.writeString(notice.getContent());
+            out.writeString(notice.getTargetSection());
+            out.writeString(notice.getSenderName());
+            out.writeString(notice.getTimestamp());
+        }
+
+        @Override
+        public Notice read(RecordInput in, int schemaVersion) throws IOException {
+            return new Notice(in.readString(), in.readString(), in.readString(), in.readString(), in.readString());
+        }
+    };
+}
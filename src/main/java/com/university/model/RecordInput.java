@@ -0,0 +1,70 @@
+package com.university.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.IntFunction;
+
+// Reads records written by RecordOutput from a ByteBuffer.
+class RecordInput {
+
+    private final ByteBuffer buf;
+    private final IntFunction<String> dictionary; // null -> strings are inline
+
+    RecordInput(ByteBuffer buf) {
+        this(buf, null);
+    }
+
+    RecordInput(ByteBuffer buf, IntFunction<String> dictionary) {
+        this.buf = buf;
+        this.dictionary = dictionary;
+    }
+
+    int readByte() {
+        return buf.get() & 0xFF;
+    }
+
+    int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = buf.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    double readDouble() {
+        return buf.getDouble();
+    }
+
+    String readString() throws IOException {
+        int tag = readVarInt();
+        if (tag == 0) return null;
+        if (dictionary == null) return readInline(tag - 1);
+
+        String s = dictionary.apply(tag - 1);
+        if (s == null) throw new IOException("String id out of range: " + (tag - 1));
+        return s;
+    }
+
+    String readRawString() throws IOException {
+        int tag = readVarInt();
+        return tag == 0 ? null : readInline(tag - 1);
+    }
+
+    private String readInline(int length) {
+        String s;
+        if (buf.hasArray()) {
+            s = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+            buf.position(buf.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buf.get(bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return s;
+    }
+
+    ByteBuffer buffer() { return buf; }
+}
@@ -0,0 +1,101 @@
+package com.university.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Arrays;
+
+// Growable byte buffer that records are encoded into.
+// With a dictionary, every string is written once per file and records only carry its id;
+// without one (log records), strings are written inline.
+class RecordOutput {
+
+    private byte[] buf = new byte[256];
+    private int size = 0;
+    private final Dictionary dictionary;
+
+    RecordOutput() {
+        this(null);
+    }
+
+    RecordOutput(Dictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    // --- String dictionary for one snapshot file ---
+    static class Dictionary {
+        private final HashMap<String, Integer> ids = new HashMap<>();
+        private final ArrayList<String> strings = new ArrayList<>();
+
+        int idOf(String s) {
+            Integer id = ids.get(s);
+            if (id == null) {
+                id = strings.size();
+                ids.put(s, id);
+                strings.add(s);
+            }
+            return id;
+        }
+
+        ArrayList<String> strings() { return strings; }
+    }
+
+    // --- Primitive Writers ---
+    void writeByte(int value) {
+        ensure(1);
+        buf[size++] = (byte) value;
+    }
+
+    // Unsigned LEB128 (1 byte for values < 128)
+    void writeVarInt(int value) {
+        ensure(5);
+        while ((value & ~0x7F) != 0) {
+            buf[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[size++] = (byte) value;
+    }
+
+    void writeDouble(double value) {
+        long bits = Double.doubleToLongBits(value);
+        ensure(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buf[size++] = (byte) (bits >>> shift);
+        }
+    }
+
+    // 0 = null, otherwise (dictionary id + 1) or (inline byte length + 1)
+    void writeString(String s) {
+        if (s == null) {
+            writeVarInt(0);
+        } else if (dictionary != null) {
+            writeVarInt(dictionary.idOf(s) + 1);
+        } else {
+            writeRawString(s);
+        }
+    }
+
+    void writeRawString(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length + 1);
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    void writeBytes(byte[] bytes, int offset, int length) {
+        ensure(length);
+        System.arraycopy(bytes, offset, buf, size, length);
+        size += length;
+    }
+
+    // --- Buffer Access ---
+    int size() { return size; }
+    byte[] array() { return buf; }
+    byte[] toByteArray() { return Arrays.copyOf(buf, size); }
+    void reset() { size = 0; }
+
+    private void ensure(int extra) {
+        if (size + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.university.model;
 import java.io.Serializable;
 
 public class RoutineSlot implements Serializable {
+
+    private static final long serialVersionUID = 5181191182467374464L;
     private String day;
     private String time;
     private String roomNo;
@@ -0,0 +1,43 @@
+package com.university.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Function;
+
+// Non-unique index: key -> records with that key, in insertion order.
+// Lookups return the bucket directly instead of filtering the whole list.
+class SecondaryIndex<T> {
+
+    private final Function<T, String> keyOf;
+    private final HashMap<String, ArrayList<T>> buckets = new HashMap<>();
+
+    SecondaryIndex(Function<T, String> keyOf) {
+        this.keyOf = keyOf;
+    }
+
+    void add(T item) {
+        buckets.computeIfAbsent(keyOf.apply(item), k -> new ArrayList<>()).add(item);
+    }
+
+    void remove(T item) {
+        String key = keyOf.apply(item);
+        ArrayList<T> bucket = buckets.get(key);
+        if (bucket == null) return;
+
+        bucket.remove(item);
+        if (bucket.isEmpty()) buckets.remove(key);
+    }
+
+    // Copy of the bucket, so the caller's list never changes under it
+    List<T> get(String key) {
+        ArrayList<T> bucket = buckets.get(key);
+        return bucket == null ? Collections.emptyList() : List.copyOf(bucket);
+    }
+
+    void rebuild(List<T> items) {
+        buckets.clear();
+        for (T item : items) add(item);
+    }
+}
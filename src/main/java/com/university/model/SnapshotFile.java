@@ -0,0 +1,210 @@
+package com.university.model;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+// Binary .dat snapshot of one entity type.
+//
+// Layout:
+//   header   [int magic "CPDB"][short formatVersion][byte entityType][short schemaVersion][long coveredGeneration]
+//   strings  [int count] then per string [varint length + 1][UTF-8 bytes]
+//   records  [int count] then per record [varint length][record bytes]
+//   index    (format 2+) [int offset] per string, then [int offset] per record body
+//   keys     (format 3)  open-addressing hash table, per slot [int keyHash][int ordinal + 1] (0 = empty)
+//   trailer  (format 2+) [int stringCount][int stringIndexOffset][int recordCount][int recordIndexOffset]
+//                        (format 3) [int keyTableOffset][int keyTableCapacity]
+//                        [int magic "CPIX"]
+//
+// Every string in the file is stored once in the dictionary; records refer to it by id.
+// Records are length-prefixed so a reader can skip fields added by a newer schema.
+// The fixed-width index lets MappedSnapshot decode any single record without reading the rest,
+// and the key table finds a record by primary key in O(1) (capacity 0 = store has no primary key).
+final class SnapshotFile {
+
+    private static final int MAGIC = 0x43504442; // "CPDB"
+    private static final int INDEX_MAGIC = 0x43504958; // "CPIX"
+    private static final int FORMAT_VERSION = 3;
+    static final int HEADER_SIZE = 4 + 2 + 1 + 2 + 8;
+
+    private SnapshotFile() {}
+
+    static int trailerSize(int formatVersion) {
+        return formatVersion >= 3 ? 7 * 4 : 5 * 4;
+    }
+
+    // Spreads String.hashCode() (stable across JVMs) over the table
+    static int keyHash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    // --- Write (temp file -> fsync -> atomic rename) ---
+    // keyOf may be null for stores without a primary key.
+    static <T> void write(File target, RecordCodec<T> codec, List<T> items, long coveredGeneration,
+                          Function<T, String> keyOf) throws IOException {
+        RecordOutput.Dictionary dictionary = new RecordOutput.Dictionary();
+        RecordOutput records = new RecordOutput(dictionary);
+        RecordOutput record = new RecordOutput(dictionary);
+        int[] recordOffsets = new int[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            record.reset();
+            codec.write(record, items.get(i));
+            records.writeVarInt(record.size());
+            recordOffsets[i] = records.size();
+            records.writeBytes(record.array(), 0, record.size());
+        }
+
+        ArrayList<String> dictionaryStrings = dictionary.strings();
+        RecordOutput strings = new RecordOutput();
+        int[] stringOffsets = new int[dictionaryStrings.size()];
+        for (int i = 0; i < stringOffsets.length; i++) {
+            stringOffsets[i] = strings.size();
+            strings.writeRawString(dictionaryStrings.get(i));
+        }
+
+        // Absolute positions of each section
+        long stringsStart = HEADER_SIZE + 4;
+        long recordsStart = stringsStart + strings.size() + 4;
+        long stringIndexStart = recordsStart + records.size();
+        long recordIndexStart = stringIndexStart + 4L * stringOffsets.length;
+        long keyTableStart = recordIndexStart + 4L * recordOffsets.length;
+        int[] keyTable = (keyOf != null) ? buildKeyTable(items, keyOf) : new int[0];
+        long end = keyTableStart + 4L * keyTable.length + trailerSize(FORMAT_VERSION);
+        if (end > Integer.MAX_VALUE) {
+            throw new IOException(target + " would exceed 2 GB");
+        }
+
+        File tmp = new File(target.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeShort(FORMAT_VERSION);
+            out.writeByte(codec.entityType());
+            out.writeShort(codec.schemaVersion());
+            out.writeLong(coveredGeneration);
+
+            out.writeInt(stringOffsets.length);
+            out.write(strings.array(), 0, strings.size());
+
+            out.writeInt(recordOffsets.length);
+            out.write(records.array(), 0, records.size());
+
+            for (int offset : stringOffsets) out.writeInt((int) stringsStart + offset);
+            for (int offset : recordOffsets) out.writeInt((int) recordsStart + offset);
+            for (int slot : keyTable) out.writeInt(slot);
+
+            out.writeInt(stringOffsets.length);
+            out.writeInt((int) stringIndexStart);
+            out.writeInt(recordOffsets.length);
+            out.writeInt((int) recordIndexStart);
+            out.writeInt((int) keyTableStart);
+            out.writeInt(keyTable.length / 2);
+            out.writeInt(INDEX_MAGIC);
+
+            out.flush();
+            fos.getFD().sync();
+        }
+
+        try {
+            Files.move(tmp.toPath(), target.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // Make the rename itself durable (not supported on every platform)
+        File dir = target.getAbsoluteFile().getParentFile();
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Linear probing, load factor <= 0.5. A later record with the same key replaces the
+    // earlier one, matching how the in-memory index is built.
+    private static <T> int[] buildKeyTable(List<T> items, Function<T, String> keyOf) {
+        int capacity = Integer.highestOneBit(Math.max(4, items.size() * 2 - 1)) << 1;
+        int[] table = new int[capacity * 2];
+        String[] keys = new String[capacity];
+        for (int ordinal = 0; ordinal < items.size(); ordinal++) {
+            String key = keyOf.apply(items.get(ordinal));
+            int hash = keyHash(key);
+            int slot = hash & (capacity - 1);
+            while (keys[slot] != null && !keys[slot].equals(key)) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            keys[slot] = key;
+            table[slot * 2] = hash;
+            table[slot * 2 + 1] = ordinal + 1;
+        }
+        return table;
+    }
+
+    // --- Header ---
+    // Checks magic, version and entity type; returns the schema version and leaves
+    // the buffer positioned after the header.
+    static int readHeader(ByteBuffer buf, File file, RecordCodec<?> codec) throws IOException {
+        if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC) {
+            throw new IOException("Not a ClassPilot data file: " + file);
+        }
+        int formatVersion = buf.getShort();
+        if (formatVersion > FORMAT_VERSION) {
+            throw new IOException(file + " was written by a newer version (format " + formatVersion + ")");
+        }
+        byte entityType = buf.get();
+        if (entityType != codec.entityType()) {
+            throw new IOException(file + " holds entity type " + entityType + ", expected " + codec.entityType());
+        }
+        return buf.getShort();
+    }
+
+    static long readCoveredGeneration(ByteBuffer buf) {
+        return buf.getLong(HEADER_SIZE - 8);
+    }
+
+    static int readFormatVersion(ByteBuffer buf) {
+        return buf.getShort(4);
+    }
+
+    // True if the file ends with the offset index (format 2 and later)
+    static boolean hasIndex(ByteBuffer buf) {
+        int formatVersion = readFormatVersion(buf);
+        return formatVersion >= 2 && buf.limit() >= HEADER_SIZE + trailerSize(formatVersion)
+                && buf.getInt(buf.limit() - 4) == INDEX_MAGIC;
+    }
+
+    // --- Read (eager) ---
+    // Decodes every record into the list and returns the log generation the snapshot covers.
+    static <T> long read(File file, RecordCodec<T> codec, List<T> into) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        int schemaVersion = readHeader(buf, file, codec);
+        long coveredGeneration = buf.getLong();
+
+        RecordInput raw = new RecordInput(buf);
+        String[] dictionary = new String[buf.getInt()];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = raw.readRawString();
+        }
+
+        int recordCount = buf.getInt();
+        if (into instanceof ArrayList) {
+            ((ArrayList<T>) into).ensureCapacity(into.size() + recordCount);
+        }
+        RecordInput in = new RecordInput(buf, id -> id < dictionary.length ? dictionary[id] : null);
+        for (int i = 0; i < recordCount; i++) {
+            int length = raw.readVarInt();
+            int end = buf.position() + length;
+            into.add(codec.read(in, schemaVersion));
+            buf.position(end);
+        }
+        return coveredGeneration;
+    }
+}
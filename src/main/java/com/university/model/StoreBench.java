@@ -0,0 +1,206 @@
+package com.university.model;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+// Benchmark of the .dat stores on a generated campus, written to a temporary directory
+// that is removed afterwards. Reports:
+//   format  size and load time of the users and routines snapshots in the legacy format
+//           (Java serialization of the whole list, see LegacyMigrator) and in
+//           SnapshotFile's binary format
+//   login   a login's lookup + password check through the primary-key index
+//           (findUser, on a memory-mapped users.dat) vs. the scan of the whole user
+//           list that it replaced
+//
+// Everything is timed in a warm JVM: the first half of the rounds are warm-up.
+//   ./gradlew storeBench --args="--users=100000 --routines=20000"
+// Options (defaults): --users=100000 --routines=20000 --courses=200 --rounds=6
+// --logins=20000 (indexed logins per round; the scan does logins / 1000)
+public class StoreBench {
+
+    private static final String[] DAYS = {"Sunday", "Monday", "Tuesday", "Wednesday", "Thursday"};
+
+    // --- Options ---
+    private int userCount = 100_000;
+    private int routineCount = 20_000;
+    private int courseCount = 200;
+    private int rounds = 6;
+    private int logins = 20_000;
+
+    private File dir;
+
+    public static void main(String[] args) throws Exception {
+        StoreBench bench = new StoreBench();
+        for (String arg : args) bench.option(arg);
+        bench.run();
+    }
+
+    private void option(String arg) {
+        String[] parts = arg.replaceFirst("^--", "").split("=", 2);
+        if (parts.length < 2) throw new IllegalArgumentException("expected --name=value: " + arg);
+        int value = Integer.parseInt(parts[1]);
+        switch (parts[0]) {
+            case "users": userCount = Math.max(1, value); break;
+            case "routines": routineCount = Math.max(1, value); break;
+            case "courses": courseCount = Math.max(1, value); break;
+            case "rounds": rounds = Math.max(1, value); break;
+            case "logins": logins = Math.max(1000, value); break;
+            default: throw new IllegalArgumentException("unknown option " + arg);
+        }
+    }
+
+    private void run() throws Exception {
+        dir = Files.createTempDirectory("store-bench").toFile();
+        try {
+            System.out.printf(Locale.ROOT, "StoreBench: %,d users, %,d routine slots, %d courses, %d rounds, Java %s%n",
+                    userCount, routineCount, courseCount, rounds, System.getProperty("java.version"));
+            formats();
+            logins();
+        } finally {
+            File[] files = dir.listFiles();
+            if (files != null) for (File file : files) file.delete();
+            dir.delete();
+        }
+    }
+
+    // ==========================
+    // FORMAT (legacy vs. binary)
+    // ==========================
+    private void formats() throws Exception {
+        List<User> users = users();
+        List<Course> courses = courses();
+        List<RoutineSlot> slots = routineSlots(courses);
+        Map<String, Course> byCode = new HashMap<>();
+        for (Course course : courses) byCode.put(course.getCourseCode(), course);
+        RecordCodec<RoutineSlot> routineCodec = RecordCodecs.routineSlots(byCode::get);
+
+        File legacyUsers = writeLegacy("users.legacy", users);
+        File legacyRoutines = writeLegacy("routines.legacy", slots);
+        File binaryUsers = new File(dir, "users.dat");
+        File binaryRoutines = new File(dir, "routines.dat");
+        SnapshotFile.write(binaryUsers, RecordCodecs.USERS, users, 0, User::getUserId);
+        SnapshotFile.write(binaryRoutines, routineCodec, slots, 0, null);
+
+        System.out.println("size (MB)          legacy     binary");
+        System.out.printf(Locale.ROOT, "  users.dat    %10.2f %10.2f%n", mb(legacyUsers), mb(binaryUsers));
+        System.out.printf(Locale.ROOT, "  routines.dat %10.2f %10.2f%n", mb(legacyRoutines), mb(binaryRoutines));
+
+        System.out.println("load (ms)          legacy     binary");
+        for (int round = 0; round < rounds; round++) {
+            long t0 = System.nanoTime();
+            readLegacy(legacyUsers);
+            long t1 = System.nanoTime();
+            SnapshotFile.read(binaryUsers, RecordCodecs.USERS, new ArrayList<>());
+            long t2 = System.nanoTime();
+            readLegacy(legacyRoutines);
+            long t3 = System.nanoTime();
+            SnapshotFile.read(binaryRoutines, routineCodec, new ArrayList<>());
+            long t4 = System.nanoTime();
+            if (round < rounds / 2) continue; // warm-up
+            System.out.printf(Locale.ROOT, "  users.dat    %10.1f %10.1f%n", ms(t1 - t0), ms(t2 - t1));
+            System.out.printf(Locale.ROOT, "  routines.dat %10.1f %10.1f%n", ms(t3 - t2), ms(t4 - t3));
+        }
+    }
+
+    // ==========================
+    // LOGIN (index vs. scan)
+    // ==========================
+    private void logins() throws IOException {
+        SnapshotFile.write(new File(dir, "users.dat"), RecordCodecs.USERS, users(), 0, User::getUserId);
+        DatabaseService db = new DatabaseService(dir);
+        Random random = new Random(1);
+
+        long t0 = System.nanoTime();
+        login(db, userCount - 1);
+        System.out.printf(Locale.ROOT, "login (us)        indexed       scan   (first indexed login %.1f us)%n",
+                us(System.nanoTime() - t0));
+        int scans = logins / 1000;
+        for (int round = 0; round < rounds; round++) {
+            long t1 = System.nanoTime();
+            for (int i = 0; i < logins; i++) login(db, random.nextInt(userCount));
+            long t2 = System.nanoTime();
+            for (int i = 0; i < scans; i++) scanLogin(db, random.nextInt(userCount));
+            long t3 = System.nanoTime();
+            if (round < rounds / 2) continue;
+            System.out.printf(Locale.ROOT, "  per login    %10.2f %10.1f%n", us(t2 - t1) / logins, us(t3 - t2) / scans);
+        }
+        db.close();
+    }
+
+    // What LoginController.validateLogin does
+    private static void login(DatabaseService db, int i) {
+        User user = db.findUser("stu" + i);
+        if (user == null || !user.validatePassword("pw" + (i % 1000))) throw new IllegalStateException("login failed: stu" + i);
+    }
+
+    // What it did before the index
+    private static void scanLogin(DatabaseService db, int i) {
+        String userId = "stu" + i;
+        for (User user : db.getUserList()) {
+            if (user.getUserId().equals(userId)) {
+                if (!user.validatePassword("pw" + (i % 1000))) break;
+                return;
+            }
+        }
+        throw new IllegalStateException("login failed: " + userId);
+    }
+
+    // The whole list with ObjectOutputStream, as the stores wrote it before SnapshotFile
+    private File writeLegacy(String name, List<?> items) throws IOException {
+        File file = new File(dir, name);
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeObject(new ArrayList<>(items));
+        }
+        return file;
+    }
+
+    private static void readLegacy(File file) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            in.readObject();
+        }
+    }
+
+    // ==========================
+    // GENERATED CAMPUS
+    // ==========================
+    private List<User> users() {
+        List<User> users = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            users.add(new Student("stu" + i, "pw" + (i % 1000), "Student Name " + i, "CSE-" + (i % 40)));
+        }
+        return users;
+    }
+
+    private List<Course> courses() {
+        List<Course> courses = new ArrayList<>(courseCount);
+        for (int i = 0; i < courseCount; i++) courses.add(new Course("CSE" + i, "Course Title Number " + i, 3.0));
+        return courses;
+    }
+
+    private List<RoutineSlot> routineSlots(List<Course> courses) {
+        List<RoutineSlot> slots = new ArrayList<>(routineCount);
+        for (int i = 0; i < routineCount; i++) {
+            slots.add(new RoutineSlot(DAYS[i % DAYS.length], (8 + i % 8) + ":00", "R" + (i % 300),
+                    courses.get(i % courses.size()), "Teacher " + (i % 400), "SEC-" + (i % 500)));
+        }
+        return slots;
+    }
+
+    private static double mb(File file) {
+        return file.length() / 1e6;
+    }
+
+    private static double us(long nanos) {
+        return nanos / 1e3;
+    }
+
+    private static double ms(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -3,6 +3,8 @@ package com.university.model;
 
 public class Student extends User {
 
+    private static final long serialVersionUID = -1942338517265503558L;
+
     private String batch;
 
 
@@ -3,6 +3,8 @@ package com.university.model;
 // Inheritance
 public class Teacher extends User {
 
+    private static final long serialVersionUID = -5448883840966588453L;
+
     private String designation; // e.g., "Professor", "Lecturer"
 
     public Teacher(String userId, String password, String fullName, String designation) {
@@ -3,6 +3,9 @@ import java.io.Serializable;
 
 public abstract class User implements Serializable {
 
+    // Pinned (here and in the other model classes) to the original values so legacy .dat files stay readable
+    private static final long serialVersionUID = -3086900087681440321L;
+
 
     private String userId;
     private String password;
@@ -25,6 +28,12 @@ public abstract class User implements Serializable {
     }
 
 
+    // Used by the storage codecs only
+    String getPassword() {
+        return password;
+    }
+
+
     public boolean validatePassword(String inputPassword) {
 
         return this.password.equals(inputPassword);
@@ -0,0 +1,252 @@
+package com.university.server;
+
+import java.io.*;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Client side of the chat protocol, used by the student and teacher dashboards.
+// One connection carries every room the user is in: subscribe() / unsubscribe() add and
+// drop rooms, and each received frame names its room.
+//
+// Falls back gracefully on older servers: without an answer to the hello it speaks the
+// legacy line protocol, and below protocol version 2 a connection holds only one room,
+// so subscribing to another one reconnects (isMultiplexed() tells the caller which).
+// Either way read() hands back ChatFrames, so callers never parse text.
+// The server's heartbeat PINGs are answered inside read() and never reach the caller.
+//
+// When the connection drops, read() throws and the caller may reconnect(): the client
+// remembers each room's next sequence number, so a version 4 server sends only what was
+// missed meanwhile. Servers that ping (version 3+) are never silent for long, so a
+// connection that hears nothing for SERVER_SILENCE_MS is taken as dropped too.
+public class ChatClient implements Closeable {
+
+    private static final int HELLO_TIMEOUT_MS = 2000;
+    // Longer than the server's default idle check plus ping timeout (30 s + 10 s)
+    private static final int SERVER_SILENCE_MS = 75_000;
+
+    private final String host;
+    private final int port;
+    private final String name;
+    private volatile Link link;
+    private final Set<String> rooms = new LinkedHashSet<>(); // guarded by this
+    private final Map<String, Long> nextSeq = new ConcurrentHashMap<>(); // per room, from received messages
+
+    // One TCP connection: binary frames or legacy lines
+    private static class Link {
+        final Socket socket;
+        final OutputStream out;
+        final DataInputStream frames; // binary protocol
+        final BufferedReader lines;   // legacy protocol
+        final int version;            // 0 = legacy lines
+
+        Link(Socket socket, DataInputStream frames, BufferedReader lines, int version) throws IOException {
+            this.socket = socket;
+            this.out = new BufferedOutputStream(socket.getOutputStream());
+            this.frames = frames;
+            this.lines = lines;
+            this.version = version;
+        }
+    }
+
+    private ChatClient(String host, int port, String name) {
+        this.host = host;
+        this.port = port;
+        this.name = name;
+    }
+
+    // Connects without joining any room yet
+    public static ChatClient connect(String host, int port, String name) throws IOException {
+        ChatClient client = new ChatClient(host, port, name);
+        client.link = client.open();
+        return client;
+    }
+
+    private Link open() throws IOException {
+        Link binary = openBinary();
+        if (binary != null) return binary;
+
+        Socket socket = new Socket(host, port);
+        return new Link(socket, null,
+                new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)), 0);
+    }
+
+    // null if the server does not speak frames
+    private Link openBinary() throws IOException {
+        Socket socket = new Socket(host, port);
+        try {
+            socket.setSoTimeout(HELLO_TIMEOUT_MS);
+            OutputStream out = socket.getOutputStream();
+            out.write(ChatFrame.hello(ChatFrame.VERSION).array());
+            out.flush();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            byte[] hello = new byte[ChatFrame.HELLO_LENGTH];
+            in.readFully(hello);
+            int version = ChatFrame.helloVersion(hello);
+            if (version >= 1) {
+                socket.setSoTimeout(version >= 3 ? SERVER_SILENCE_MS : 0);
+                return new Link(socket, in, null, version);
+            }
+        } catch (SocketTimeoutException | EOFException e) {
+            // legacy server: it waits for a line and never answers
+        }
+        socket.close();
+        return null;
+    }
+
+    public boolean isBinary() {
+        return link.version >= 1;
+    }
+
+    // Several rooms on this one connection (protocol version 2 and up)
+    public boolean isMultiplexed() {
+        return link.version >= 2;
+    }
+
+    // reconnect() continues where the rooms left off (protocol version 4 and up)
+    public boolean isResumable() {
+        return link.version >= 4;
+    }
+
+    // --- Rooms ---
+    // Starts receiving a room; the server first replays its recent messages
+    public synchronized void subscribe(String room) throws IOException {
+        if (rooms.contains(room)) return;
+
+        if (!isMultiplexed() && !rooms.isEmpty()) {
+            // One room per connection on this server: switch by reconnecting
+            Link old = link;
+            link = open();
+            rooms.clear();
+            old.socket.close();
+        }
+        rooms.add(room);
+        if (isBinary()) {
+            write(new ChatFrame(ChatFrame.SUBSCRIBE, 0, room, name, ""));
+        } else {
+            writeLine("JOIN:" + room + ":" + name);
+        }
+    }
+
+    public synchronized void unsubscribe(String room) throws IOException {
+        nextSeq.remove(room);
+        if (!rooms.remove(room) || !isMultiplexed()) return;
+        write(new ChatFrame(ChatFrame.UNSUBSCRIBE, 0, room, name, ""));
+    }
+
+    public synchronized void send(String room, String text) throws IOException {
+        if (!rooms.contains(room)) throw new IOException("not subscribed to " + room);
+        if (!ChatFrame.fits(room, name, text)) throw new IOException("message too long");
+        if (isBinary()) {
+            write(new ChatFrame(ChatFrame.MESSAGE, 0, room, name, text));
+        } else {
+            writeLine("MSG:" + text);
+        }
+    }
+
+    // Opens a new connection after the old one dropped and subscribes to the same rooms.
+    // Returns true if the server resumes them, sending only the messages missed meanwhile;
+    // false if it replays recent history as for a new member (older servers), in which
+    // case the caller should first forget what it shows.
+    // The connection is opened without holding the lock, so send() on the JavaFX thread
+    // never waits for a connect (it fails fast on the dropped link meanwhile).
+    public boolean reconnect() throws IOException {
+        Link old = link;
+        Link fresh = open();
+        synchronized (this) {
+            if (link != old) { // subscribe() switched connections meanwhile
+                fresh.socket.close();
+                return isResumable();
+            }
+            link = fresh;
+            try {
+                old.socket.close();
+            } catch (IOException ignored) {
+            }
+
+            for (String room : rooms) {
+                Long next = nextSeq.get(room);
+                if (isResumable() && next != null) {
+                    write(new ChatFrame(ChatFrame.RESUME, next, room, name, ""));
+                } else if (isBinary()) {
+                    write(new ChatFrame(ChatFrame.SUBSCRIBE, 0, room, name, ""));
+                } else {
+                    writeLine("JOIN:" + room + ":" + name);
+                }
+                if (!isMultiplexed()) break; // one room per connection
+            }
+            if (!isResumable()) nextSeq.clear();
+            return isResumable();
+        }
+    }
+
+    private synchronized void pong(long seq) throws IOException {
+        write(new ChatFrame(ChatFrame.PONG, seq, "", name, ""));
+    }
+
+    private void write(ChatFrame frame) throws IOException {
+        ByteBuffer bytes = frame.encode();
+        link.out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        link.out.flush();
+    }
+
+    private void writeLine(String line) throws IOException {
+        link.out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+        link.out.flush();
+    }
+
+    // --- Receiving ---
+    // Next message or notice from any subscribed room, blocking; null once the server
+    // closed the connection. A reconnect by subscribe() is followed transparently.
+    public ChatFrame read() throws IOException {
+        while (true) {
+            Link current = link;
+            try {
+                ChatFrame frame = read(current);
+                if (current != link) continue; // left over from the room we switched away from
+                if (frame != null && frame.type == ChatFrame.PING) {
+                    pong(frame.seq);
+                    continue;
+                }
+                if (frame != null && frame.type == ChatFrame.SUBSCRIBE) {
+                    nextSeq.put(frame.room, frame.seq); // joined: the room's position after the replay
+                    continue;
+                }
+                if (frame != null && frame.type == ChatFrame.MESSAGE && current.frames != null) {
+                    nextSeq.put(frame.room, frame.seq + 1);
+                }
+                return frame;
+            } catch (IOException e) {
+                if (current == link) throw e;
+            }
+        }
+    }
+
+    private ChatFrame read(Link current) throws IOException {
+        if (current.frames != null) return ChatFrame.read(current.frames);
+
+        String line = current.lines.readLine();
+        if (line == null) return null;
+        String room;
+        synchronized (this) {
+            room = rooms.isEmpty() ? "" : rooms.iterator().next();
+        }
+        // "sender: text" -- ambiguous when a name contains ": ", which is why frames exist
+        int colon = line.indexOf(": ");
+        if (colon < 0) return new ChatFrame(ChatFrame.NOTICE, 0, room, ChatMessage.SERVER, line);
+        String sender = line.substring(0, colon);
+        byte type = sender.equals(ChatMessage.SERVER) ? ChatFrame.NOTICE : ChatFrame.MESSAGE;
+        return new ChatFrame(type, 0, room, sender, line.substring(colon + 2));
+    }
+
+    @Override
+    public void close() throws IOException {
+        link.socket.close();
+    }
+}
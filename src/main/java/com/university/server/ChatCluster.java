@@ -0,0 +1,204 @@
+package com.university.server;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Clustered mode: several chat servers share the rooms, so one machine no longer caps
+// how many students can chat. Each room is owned by one node, which numbers, stores and
+// rate-limits its messages exactly as a single server does. Owners are picked by
+// consistent hashing: every node puts POINTS_PER_NODE points on a hash ring and a room
+// belongs to the first point at or after its name's hash, so adding a node moves only
+// its share of the rooms.
+//
+// Clients may connect to any node. A node relays the rooms it does not own: it
+// subscribes to them once over a PeerLink to the owner (one connection per owner,
+// carrying all of that owner's rooms), mirrors what comes back into a RoomHistory and
+// fans it out to its own members, and passes their messages and join notices up the
+// link. Clients see one room and one numbering whichever node they reached, and need
+// no changes.
+//
+// Every node is started with the same list of all nodes' client addresses and its own:
+// -Dclasspilot.chat.cluster=localhost:12345,localhost:12346,localhost:12347 (empty = single server)
+// -Dclasspilot.chat.node=localhost:12346 (default localhost:<port>) -Dclasspilot.chat.port=12346
+// and the same -Dclasspilot.chat.clusterSecret, which a link must present: a peer is
+// trusted with any sender name and is not rate-limited.
+// Give each node its own historyDir. The list is static: while a node is down its rooms
+// are unavailable, and their members on other nodes are disconnected so their clients
+// keep reconnecting (and resume once it is back).
+final class ChatCluster {
+
+    private static final int POINTS_PER_NODE = 64;
+
+    static final int PORT = Integer.getInteger("classpilot.chat.port", 12345);
+    static final List<String> NODES = parseNodes(System.getProperty("classpilot.chat.cluster", ""));
+    static final String SELF = System.getProperty("classpilot.chat.node", "localhost:" + PORT);
+    static final String SECRET = System.getProperty("classpilot.chat.clusterSecret", "");
+
+    private static final TreeMap<Long, String> ring = new TreeMap<>();
+    // Owner of each room seen so far (the ring never changes while running)
+    private static final ConcurrentHashMap<String, String> owners = new ConcurrentHashMap<>();
+    // Links to the owners of rooms this node relays, by node
+    private static final ConcurrentHashMap<String, PeerLink> links = new ConcurrentHashMap<>();
+    // Addresses other nodes may link from
+    private static final Set<InetAddress> nodeAddresses = new HashSet<>();
+
+    // --- Counters ---
+    static final LongAdder relayedUp = new LongAdder();   // local members' messages sent to owners
+    static final LongAdder relayedDown = new LongAdder(); // owners' messages fanned out here
+
+    static {
+        for (String node : NODES) {
+            for (int i = 0; i < POINTS_PER_NODE; i++) ring.put(hash(node + "#" + i), node);
+            if (!wellFormed(node)) continue;
+            try {
+                nodeAddresses.addAll(List.of(InetAddress.getAllByName(host(node))));
+            } catch (UnknownHostException e) {
+                ChatLog.error("Cannot resolve cluster node " + node + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private ChatCluster() {
+    }
+
+    static boolean enabled() {
+        return !NODES.isEmpty();
+    }
+
+    // Null if the configuration is usable, else what is wrong with it
+    static String checkConfiguration() {
+        for (String node : NODES) {
+            if (!wellFormed(node)) return "cluster node " + node + " is not host:port";
+        }
+        if (enabled() && !NODES.contains(SELF)) return "this node (" + SELF + ") is not in the cluster list " + NODES;
+        if (enabled() && SECRET.isEmpty()) return "a cluster needs -Dclasspilot.chat.clusterSecret (the same on every node)";
+        return null;
+    }
+
+    // ==========================
+    // ROOM OWNERSHIP
+    // ==========================
+    // The node owning the room, or null if it is this one
+    static String remoteOwner(String room) {
+        if (!enabled()) return null;
+        String owner = owners.computeIfAbsent(room, name -> {
+            Map.Entry<Long, String> point = ring.ceilingEntry(hash(name));
+            return point != null ? point.getValue() : ring.firstEntry().getValue(); // wraps around
+        });
+        return owner.equals(SELF) ? null : owner;
+    }
+
+    // First 8 bytes of the MD5: the same on every node and JVM, and evenly spread
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < 8; i++) hash = (hash << 8) | (digest[i] & 0xff);
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JVM has MD5
+        }
+    }
+
+    // ==========================
+    // RELAYING (rooms owned elsewhere)
+    // ==========================
+    // Called in the room's map entry update whenever a local member joins a remote room:
+    // subscribes to it upstream unless the owner's link already carries it. True if it
+    // did, and the owner will replay (or, for resumeFrom >= 0, resume) the room.
+    static boolean relay(String room, long resumeFrom) {
+        String owner = remoteOwner(room);
+        if (owner == null) return false;
+
+        PeerLink link = links.compute(owner, (node, current) -> current == null || !current.isOpen() ? new PeerLink(node) : current);
+        if (!link.rooms.add(room)) return false;
+        if (resumeFrom < 0) {
+            link.send(new ChatFrame(ChatFrame.SUBSCRIBE, 0, room, SELF, ""));
+        } else {
+            link.send(new ChatFrame(ChatFrame.RESUME, resumeFrom, room, SELF, ""));
+        }
+        return true;
+    }
+
+    // Called in the room's map entry update when its last local member has left
+    static void unrelay(String room) {
+        PeerLink link = upstream(room);
+        if (link != null && link.rooms.remove(room)) {
+            link.send(new ChatFrame(ChatFrame.UNSUBSCRIBE, 0, room, SELF, ""));
+        }
+    }
+
+    static void message(String room, String sender, String text) {
+        PeerLink link = upstream(room);
+        if (link == null) return; // lost: its members are being disconnected
+        relayedUp.increment();
+        link.send(new ChatFrame(ChatFrame.MESSAGE, 0, room, sender, text));
+    }
+
+    static void notice(String room, String text) {
+        PeerLink link = upstream(room);
+        if (link != null) link.send(new ChatFrame(ChatFrame.NOTICE, 0, room, ChatMessage.SERVER, text));
+    }
+
+    private static PeerLink upstream(String room) {
+        String owner = remoteOwner(room);
+        return owner == null ? null : links.get(owner);
+    }
+
+    // ==========================
+    // INCOMING LINKS
+    // ==========================
+    // Only a configured node, from one of the configured nodes' addresses and with the
+    // cluster secret, may relay: a peer's messages carry any sender name it likes. Being
+    // on this machine is not enough (the dashboards connect over loopback too).
+    static boolean mayLink(InetAddress address, String node, String secret) {
+        return enabled() && address != null && nodeAddresses.contains(address) && NODES.contains(node) && !node.equals(SELF)
+                && MessageDigest.isEqual(secret.getBytes(StandardCharsets.UTF_8), SECRET.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // For the STATS report
+    static String describe() {
+        if (!enabled()) return "single server";
+        int relayed = 0;
+        int open = 0;
+        for (PeerLink link : links.values()) {
+            if (!link.isOpen()) continue;
+            open++;
+            relayed += link.rooms.size();
+        }
+        return String.format(Locale.ROOT, "node %s of %d, relaying %d rooms over %d links (%d messages up, %d down)",
+                SELF, NODES.size(), relayed, open, relayedUp.sum(), relayedDown.sum());
+    }
+
+    private static List<String> parseNodes(String list) {
+        ArrayList<String> nodes = new ArrayList<>();
+        for (String node : list.split(",")) {
+            if (!node.isBlank() && !nodes.contains(node.trim())) nodes.add(node.trim());
+        }
+        return List.copyOf(nodes);
+    }
+
+    private static boolean wellFormed(String node) {
+        return node.matches(".+:\\d{1,5}");
+    }
+
+    static String host(String node) {
+        return node.substring(0, node.lastIndexOf(':'));
+    }
+
+    static int port(String node) {
+        return Integer.parseInt(node.substring(node.lastIndexOf(':') + 1));
+    }
+}
@@ -0,0 +1,87 @@
+package com.university.server;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// One connected chat client, independent of the engine serving it
+// (thread-per-client or the NIO event loop).
+// Lines for the client go through its bounded OutboundQueue and are written by the
+// engine's writer, so send() never waits on the client's network.
+abstract class ChatConnection {
+
+    // Set by the JOIN line / first SUBSCRIBE frame
+    String clientName;
+    // The one room of a line-protocol client (its MSG lines name no room)
+    String groupName;
+    // Rooms this connection receives: one for line clients, any number for binary ones
+    final Set<String> rooms = ConcurrentHashMap.newKeySet();
+
+    // Binary frames instead of text lines, chosen by the hello before JOIN (see ChatFrame)
+    boolean binary = false;
+    // Negotiated binary protocol version, 0 for line clients
+    volatile int version = 0;
+    // A link from another cluster node relaying rooms for its clients (see ChatCluster)
+    volatile boolean peer = false;
+
+    // --- Liveness (see ChatServer heartbeats) ---
+    volatile long lastHeard = System.nanoTime(); // last line or frame received
+    volatile TimerWheel.Timeout heartbeat;       // pending liveness check
+    boolean pinged = false;                      // timer thread only
+
+    // --- Rate limit (reader only, see ChatServer rate limits) ---
+    final TokenBucket sendLimit = new TokenBucket(ChatServer.CLIENT_RATE, ChatServer.CLIENT_BURST);
+    final TokenBucket joinLimit = new TokenBucket(ChatServer.JOIN_RATE, ChatServer.MAX_ROOMS_PER_CLIENT);
+    long throttled = 0;        // messages refused
+    long throttleNoticedAt;    // when it was last told so
+
+    final OutboundQueue outbound = new OutboundQueue(this);
+
+    // Queues a message in this client's protocol. The encoded bytes are shared with the
+    // other members, only the position is per client.
+    final void send(ChatMessage message) {
+        send(encode(message), null);
+    }
+
+    // Same for a live broadcast, which is timed until every member's copy is written
+    final void deliver(ChatMessage message) {
+        send(encode(message), message);
+    }
+
+    ByteBuffer encode(ChatMessage message) {
+        return binary ? message.frame() : message.line();
+    }
+
+    // Queues already encoded bytes
+    final void send(ByteBuffer encoded) {
+        send(encoded, null);
+    }
+
+    private void send(ByteBuffer encoded, ChatMessage tracked) {
+        switch (outbound.offer(encoded.duplicate(), tracked, clientName)) {
+            case QUEUED_FIRST:
+                startWriting();
+                break;
+            case OVERFLOW:
+                close();
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Called when a line lands in an empty queue (engines whose writer does not wait on it)
+    abstract void startWriting();
+
+    // Closes the connection; ChatServer.onClose runs once afterwards
+    abstract void close();
+
+    // Closes once everything queued so far is written; reading stops meanwhile
+    final void closeWhenSent() {
+        outbound.finish();
+        startWriting();
+    }
+
+    abstract InetAddress remoteAddress();
+}
@@ -0,0 +1,179 @@
+package com.university.server;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Binary chat protocol, shared by the server and the dashboards' ChatClient.
+//
+// A binary client opens the connection with a 5-byte hello: 00 'C' 'P' 'F' <version>.
+// A text line can never start with a 00 byte, so the server tells the two protocols
+// apart by the first byte; anything else is the legacy JOIN:/MSG: line protocol.
+// The server answers with its own hello carrying the version both sides will speak.
+//   version 1: one room per connection (SUBSCRIBE once, then MESSAGE)
+//   version 2: any number of rooms per connection (SUBSCRIBE / UNSUBSCRIBE at any time)
+//   version 3: heartbeats; an idle client is sent PING and must answer PONG
+//   version 4: session resume; after a reconnect RESUME re-subscribes a room and gets only
+//              the messages from its seq on, instead of the recent-history replay. The
+//              server confirms SUBSCRIBE and RESUME, after any replay, with a SUBSCRIBE
+//              frame whose seq is the room's next sequence number.
+//   version 5: cluster links; a node relaying rooms for its own clients opens the
+//              connection with PEER instead of SUBSCRIBE, the cluster secret as its
+//              text (see ChatCluster)
+//
+// After the hello every message is one frame, big-endian:
+//   int    length of the rest of the frame
+//   byte   type (SUBSCRIBE, MESSAGE, NOTICE, UNSUBSCRIBE, PING, PONG, RESUME, PEER)
+//   long   sequence number of the message in its room (0 when not applicable)
+//   short  room length,   room (UTF-8)
+//   short  sender length, sender (UTF-8)
+//   ...    text (UTF-8) up to the end of the frame
+// Fields are length-delimited, so names and text may contain ':' or anything else.
+public final class ChatFrame {
+
+    public static final byte VERSION = 5;
+    static final byte[] HELLO = {0, 'C', 'P', 'F'};
+    static final int HELLO_LENGTH = HELLO.length + 1;
+
+    // Frame types
+    public static final byte SUBSCRIBE = 1;   // client -> server: join the room (the first one also names the sender); back: joined
+    public static final byte MESSAGE = 2;     // both ways: chat text in the frame's room
+    public static final byte NOTICE = 3;      // server -> client: "Bob has joined the chat." etc.
+    public static final byte UNSUBSCRIBE = 4; // client -> server: leave the room (version 2)
+    public static final byte PING = 5;        // both ways: are you there? (version 3)
+    public static final byte PONG = 6;        // both ways: answer to PING, echoing its seq
+    public static final byte RESUME = 7;      // client -> server: SUBSCRIBE, continuing at seq (version 4)
+    public static final byte PEER = 8;        // node -> node: first frame of a cluster link, sender = the node (version 5)
+
+    // Largest accepted frame body; a longer length prefix means a broken or hostile peer
+    public static final int MAX_LENGTH = 64 * 1024;
+    // Longest room or sender name in UTF-8 bytes (the server refuses longer ones)
+    public static final int MAX_NAME = 255;
+    private static final int FIXED_LENGTH = 1 + 8 + 2 + 2;
+
+    public final byte type;
+    public final long seq;
+    public final String room;
+    public final String sender;
+    public final String text;
+
+    public ChatFrame(byte type, long seq, String room, String sender, String text) {
+        this.type = type;
+        this.seq = seq;
+        this.room = room;
+        this.sender = sender;
+        this.text = text;
+    }
+
+    static ByteBuffer hello(byte version) {
+        ByteBuffer hello = ByteBuffer.allocate(HELLO_LENGTH);
+        hello.put(HELLO).put(version).flip();
+        return hello;
+    }
+
+    // Version from a received hello, or -1 if the bytes are not a hello
+    static int helloVersion(byte[] hello) {
+        if (hello.length != HELLO_LENGTH) return -1;
+        for (int i = 0; i < HELLO.length; i++) {
+            if (hello[i] != HELLO[i]) return -1;
+        }
+        return hello[HELLO.length];
+    }
+
+    // --- Encoding ---
+    // The whole frame including its length prefix, ready to write. A frame the other side
+    // would refuse is never sent: callers check fits() for anything a client supplied.
+    public ByteBuffer encode() {
+        byte[] roomBytes = room.getBytes(StandardCharsets.UTF_8);
+        byte[] senderBytes = sender.getBytes(StandardCharsets.UTF_8);
+        byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
+        if (roomBytes.length > Short.MAX_VALUE || senderBytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("room or sender name too long");
+        }
+
+        int length = FIXED_LENGTH + roomBytes.length + senderBytes.length + textBytes.length;
+        if (length > MAX_LENGTH) {
+            throw new IllegalArgumentException("frame of " + length + " bytes is longer than " + MAX_LENGTH);
+        }
+        ByteBuffer frame = ByteBuffer.allocate(4 + length);
+        frame.putInt(length).put(type).putLong(seq);
+        frame.putShort((short) roomBytes.length).put(roomBytes);
+        frame.putShort((short) senderBytes.length).put(senderBytes);
+        frame.put(textBytes);
+        frame.flip();
+        return frame;
+    }
+
+    // True if a frame with these fields is at most MAX_LENGTH
+    public static boolean fits(String room, String sender, String text) {
+        return FIXED_LENGTH + utf8Length(room) + utf8Length(sender) + utf8Length(text) <= MAX_LENGTH;
+    }
+
+    public static boolean nameFits(String name) {
+        return utf8Length(name) <= MAX_NAME;
+    }
+
+    // Room, user and node names: short enough, and no control characters. A CR or LF
+    // would end the line early for line-protocol clients and let a name forge more lines.
+    public static boolean isValidName(String name) {
+        if (!nameFits(name)) return false;
+        for (int i = 0; i < name.length(); i++) {
+            if (Character.isISOControl(name.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    // Encoded length without encoding (at most a few bytes over for a broken surrogate)
+    private static int utf8Length(String value) {
+        int length = value.length();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x800 && !Character.isSurrogate(c)) length += 2;
+            else if (c >= 0x80) length++; // a surrogate pair is 4 bytes, 2 per char
+        }
+        return length;
+    }
+
+    // --- Decoding ---
+    // Length prefix of the next frame; IOException if it is out of range
+    static int checkLength(int length) throws IOException {
+        if (length < FIXED_LENGTH || length > MAX_LENGTH) throw new IOException("bad frame length " + length);
+        return length;
+    }
+
+    // Decodes one frame body (everything after the length prefix)
+    static ChatFrame decode(ByteBuffer body) throws IOException {
+        try {
+            byte type = body.get();
+            long seq = body.getLong();
+            String room = string(body, Short.toUnsignedInt(body.getShort()));
+            String sender = string(body, Short.toUnsignedInt(body.getShort()));
+            String text = string(body, body.remaining());
+            return new ChatFrame(type, seq, room, sender, text);
+        } catch (RuntimeException e) { // BufferUnderflowException
+            throw new IOException("malformed frame", e);
+        }
+    }
+
+    // Reads one whole frame from a blocking stream; null at a clean end of stream
+    static ChatFrame read(DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        byte[] body = new byte[checkLength(length)];
+        in.readFully(body);
+        return decode(ByteBuffer.wrap(body));
+    }
+
+    private static String string(ByteBuffer body, int length) throws IOException {
+        if (length > body.remaining()) throw new IOException("malformed frame");
+        String value = new String(body.array(), body.arrayOffset() + body.position(), length, StandardCharsets.UTF_8);
+        body.position(body.position() + length);
+        return value;
+    }
+}
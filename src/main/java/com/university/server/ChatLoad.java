@@ -0,0 +1,314 @@
+package com.university.server;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Load generator for capacity tests of ChatServer on one box over loopback.
+// Opens N simulated students speaking the JOIN:/MSG: line protocol, spread evenly over
+// M rooms, each sending at a fixed rate, and reports end-to-end latency percentiles,
+// delivered throughput and the server's CPU and heap (from its STATS command).
+//
+// Sending is open-loop: every message has an intended send time on a fixed schedule and
+// its latency is measured from that time, so a server that falls behind shows up as
+// latency instead of quietly lowering the offered load (no coordinated omission).
+//
+// Start the server with its rate limits off, or most messages are throttled:
+//   java -Dclasspilot.chat.clientRate=0 -Dclasspilot.chat.roomRate=0 ... com.university.server.ChatServer
+//   ./gradlew chatLoad --args="--clients=2000 --rooms=100 --rate=1 --duration=60"
+// Options (defaults): --host=127.0.0.1 --port=12345 --clients=100 --rooms=10 --rate=1
+// (messages per second per client) --size=100 (bytes of text) --duration=30 --warmup=5
+// (seconds) --senders=4 (sending threads)
+// --ports=12345,12346,12347 spreads each room's members over the nodes of a local
+// cluster (see ChatCluster); CPU and heap are then those of the --port node.
+public class ChatLoad {
+
+    private static final String PREFIX = "load";
+    // After the measured window, time for its last messages to arrive
+    private static final long DRAIN_MILLIS = 2000;
+
+    // --- Options ---
+    private String host = "127.0.0.1";
+    private int port = 12345;
+    private int[] ports = null; // cluster nodes, null = just port
+    private int clients = 100;
+    private int roomCount = 10;
+    private double rate = 1;
+    private int size = 100;
+    private int durationSeconds = 30;
+    private int warmupSeconds = 5;
+    private int senders = 4;
+
+    // --- Results: messages whose intended send time falls in the measured window ---
+    private volatile long windowStart = Long.MAX_VALUE;
+    private volatile long windowEnd = Long.MAX_VALUE;
+    private volatile boolean stopping = false;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder expected = new LongAdder(); // sent x members of its room
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder lost = new LongAdder();     // connections the server closed
+
+    private final ArrayList<SimulatedClient> all = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        ChatLoad load = new ChatLoad();
+        for (String arg : args) load.option(arg);
+        load.run();
+        System.exit(0);
+    }
+
+    private void option(String arg) {
+        String[] parts = arg.replaceFirst("^--", "").split("=", 2);
+        if (parts.length < 2) throw new IllegalArgumentException("expected --name=value: " + arg);
+        String value = parts[1];
+        switch (parts[0]) {
+            case "host": host = value; break;
+            case "port": port = Integer.parseInt(value); break;
+            case "ports": ports = Arrays.stream(value.split(",")).mapToInt(p -> Integer.parseInt(p.trim())).toArray(); break;
+            case "clients": clients = Math.max(1, Integer.parseInt(value)); break;
+            case "rooms": roomCount = Math.max(1, Integer.parseInt(value)); break;
+            case "rate": rate = Double.parseDouble(value); break;
+            case "size": size = Math.max(0, Integer.parseInt(value)); break;
+            case "duration": durationSeconds = Math.max(1, Integer.parseInt(value)); break;
+            case "warmup": warmupSeconds = Math.max(0, Integer.parseInt(value)); break;
+            case "senders": senders = Math.max(1, Integer.parseInt(value)); break;
+            default: throw new IllegalArgumentException("unknown option " + arg);
+        }
+    }
+
+    // ==========================
+    // RUN
+    // ==========================
+    private void run() throws Exception {
+        roomCount = Math.min(roomCount, clients);
+        System.out.printf(Locale.ROOT, "ChatLoad: %d clients in %d rooms, %.2f msg/s each, %d B, %d s after %d s warm-up, %s:%s%n",
+                clients, roomCount, rate, size, durationSeconds, warmupSeconds, host,
+                ports == null ? String.valueOf(port) : Arrays.toString(ports));
+
+        // Connect and join, then wait for every client's own join notice: anything before
+        // it is the room's history replay
+        CountDownLatch joined = new CountDownLatch(clients);
+        long connectStart = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            SimulatedClient client = new SimulatedClient(i, joined);
+            all.add(client);
+            Thread.ofVirtual().name("load-reader-" + i).start(client::readLoop);
+        }
+        if (!joined.await(60, TimeUnit.SECONDS)) {
+            System.out.println("Only " + (clients - joined.getCount()) + " of " + clients + " clients joined within 60 s");
+            return;
+        }
+        System.out.printf(Locale.ROOT, "connected     %d clients in %.1f s%n", clients, (System.nanoTime() - connectStart) / 1e9);
+
+        ArrayList<Thread> senderThreads = new ArrayList<>();
+        for (int s = 0; s < senders && s < clients; s++) {
+            int slice = s;
+            Thread thread = new Thread(() -> sendLoop(slice), "load-sender-" + s);
+            thread.start();
+            senderThreads.add(thread);
+        }
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(warmupSeconds));
+        Stats before = Stats.fetch(host, port);
+        long loadCpuBefore = ChatMetrics.processCpuNanos();
+        long start = System.nanoTime();
+        windowStart = start;
+        Thread.sleep(TimeUnit.SECONDS.toMillis(durationSeconds));
+        long end = System.nanoTime();
+        windowEnd = end;
+        double seconds = (end - start) / 1e9;
+        Stats after = Stats.fetch(host, port);
+        long loadCpu = ChatMetrics.processCpuNanos() - loadCpuBefore;
+
+        Thread.sleep(DRAIN_MILLIS);
+        stopping = true;
+        for (Thread thread : senderThreads) thread.join();
+        for (SimulatedClient client : all) client.close();
+
+        report(seconds, before, after, loadCpu);
+    }
+
+    private void report(double seconds, Stats before, Stats after, long loadCpuNanos) {
+        long sentCount = sent.sum();
+        long deliveredCount = delivered.sum();
+        long expectedCount = expected.sum();
+        System.out.printf(Locale.ROOT, "sent          %d (%.1f/s, %.1f/s offered)%n",
+                sentCount, sentCount / seconds, clients * rate);
+        System.out.printf(Locale.ROOT, "delivered     %d (%.1f/s), %.2f%% of %d expected%n",
+                deliveredCount, deliveredCount / seconds, expectedCount == 0 ? 0 : 100.0 * deliveredCount / expectedCount, expectedCount);
+        System.out.printf(Locale.ROOT, "latency (us)  %s%n", LatencyHistogram.header());
+        System.out.printf(Locale.ROOT, "  end-to-end  %s%n", latency.summary());
+        if (before != null && after != null) {
+            double cpu = (after.cpuSeconds - before.cpuSeconds);
+            System.out.printf(Locale.ROOT, "server        cpu %.2f s (%.0f%% of one core), %.2f us per delivered line; heap %.1f of %.1f MB; %d threads%n",
+                    cpu, 100 * cpu / seconds, deliveredCount == 0 ? 0 : cpu * 1e6 / deliveredCount,
+                    after.heapUsedMb, after.heapCommittedMb, after.threads);
+        } else {
+            System.out.println("server        no STATS answer (not on loopback, or an older server)");
+        }
+        System.out.printf(Locale.ROOT, "load tool     cpu %.2f s (%.0f%% of one core)%n",
+                loadCpuNanos / 1e9, 100 * loadCpuNanos / 1e9 / seconds);
+        if (throttled.sum() > 0) {
+            System.out.println("throttled     " + throttled.sum() + " notices: start the server with its rate limits off");
+        }
+        if (lost.sum() > 0) {
+            System.out.println("lost          " + lost.sum() + " connections closed by the server");
+        }
+    }
+
+    // ==========================
+    // SENDING
+    // ==========================
+    // One sender thread paces its slice of the clients (every senders-th one) round-robin
+    // on a fixed schedule; when it falls behind it sends without sleeping, never skipping.
+    private void sendLoop(int slice) {
+        ArrayList<SimulatedClient> mine = new ArrayList<>();
+        for (int i = slice; i < all.size(); i += senders) mine.add(all.get(i));
+        if (mine.isEmpty() || rate <= 0) return;
+
+        long interval = (long) (1e9 / (rate * mine.size()));
+        String padding = "x".repeat(size);
+        long intended = System.nanoTime() + (long) (Math.random() * interval);
+        int next = 0;
+        while (!stopping) {
+            long wait = intended - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+
+            SimulatedClient client = mine.get(next);
+            next = (next + 1) % mine.size();
+            if (client.send("MSG:" + intended + " " + padding + "\n") && inWindow(intended)) {
+                sent.increment();
+                expected.add(client.roomSize);
+            }
+            intended += interval;
+        }
+    }
+
+    private boolean inWindow(long intended) {
+        return intended >= windowStart && intended < windowEnd;
+    }
+
+    // ==========================
+    // SIMULATED CLIENT
+    // ==========================
+    private class SimulatedClient {
+        private final String name;
+        private final int roomSize;
+        private final CountDownLatch joined;
+        private final Socket socket;
+        private final OutputStream out;
+        private boolean closed = false; // sender thread only
+
+        SimulatedClient(int index, CountDownLatch joined) throws IOException {
+            this.name = PREFIX + index;
+            int room = index % roomCount;
+            this.roomSize = clients / roomCount + (room < clients % roomCount ? 1 : 0);
+            this.joined = joined;
+            // Consecutive members of a room land on different nodes
+            this.socket = new Socket(host, ports == null ? port : ports[(index / roomCount) % ports.length]);
+            this.socket.setTcpNoDelay(true);
+            this.out = socket.getOutputStream();
+            out.write(("JOIN:" + PREFIX + "-room-" + room + ":" + name + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        boolean send(String line) {
+            if (closed) return false;
+            try {
+                out.write(line.getBytes(StandardCharsets.UTF_8)); // one write, one segment
+                return true;
+            } catch (IOException e) {
+                closed = true;
+                return false;
+            }
+        }
+
+        // "sender: <intended nanos> xxx..." from another simulated client, or a notice
+        void readLoop() {
+            String ownJoin = ChatMessage.SERVER + ": " + name + " has joined the chat.";
+            boolean live = false;
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    long now = System.nanoTime();
+                    if (!live) {
+                        if (line.equals(ownJoin)) {
+                            live = true;
+                            joined.countDown();
+                        }
+                        continue; // history replay
+                    }
+                    if (line.startsWith(ChatMessage.SERVER + ": ")) {
+                        if (line.contains("too fast") || line.contains("too busy")) throttled.increment();
+                        continue;
+                    }
+                    int text = line.indexOf(": ");
+                    if (text < 0 || !line.startsWith(PREFIX)) continue;
+                    int end = line.indexOf(' ', text + 2);
+                    try {
+                        long intended = Long.parseLong(line.substring(text + 2, end < 0 ? line.length() : end));
+                        if (!inWindow(intended)) continue;
+                        latency.record(now - intended);
+                        delivered.increment();
+                    } catch (NumberFormatException e) {
+                        // someone else's message in the room
+                    }
+                }
+                if (!stopping) lost.increment();
+            } catch (IOException e) {
+                if (!stopping) lost.increment();
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // ==========================
+    // SERVER STATS
+    // ==========================
+    // The process line of the server's STATS report
+    private static class Stats {
+        private static final Pattern PROCESS = Pattern.compile(
+                "process\\s+cpu ([0-9.]+) s, heap ([0-9.]+) of ([0-9.]+) MB used, (\\d+) threads");
+
+        double cpuSeconds;
+        double heapUsedMb;
+        double heapCommittedMb;
+        int threads;
+
+        // null if the server does not answer STATS
+        static Stats fetch(String host, int port) {
+            try (Socket socket = new Socket(host, port)) {
+                socket.setSoTimeout(5000);
+                socket.getOutputStream().write("STATS\n".getBytes(StandardCharsets.UTF_8));
+                socket.shutdownOutput();
+                String report = new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+                Matcher matcher = PROCESS.matcher(report);
+                if (!matcher.find()) return null;
+                Stats stats = new Stats();
+                stats.cpuSeconds = Double.parseDouble(matcher.group(1));
+                stats.heapUsedMb = Double.parseDouble(matcher.group(2));
+                stats.heapCommittedMb = Double.parseDouble(matcher.group(3));
+                stats.threads = Integer.parseInt(matcher.group(4));
+                return stats;
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+}
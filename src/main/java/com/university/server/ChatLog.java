@@ -0,0 +1,75 @@
+package com.university.server;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Console log of the chat server that never blocks the caller. System.out is
+// synchronized, so printing straight from an event loop or reader thread made every
+// connection wait on the terminal; here lines go into a bounded queue and the
+// "chat-log" thread prints them. If the console falls that far behind, lines are
+// dropped and counted instead of slowing the server down.
+final class ChatLog {
+
+    private static final int CAPACITY = 8192;
+
+    private static final class Line {
+        final PrintStream stream;
+        final String text;
+
+        Line(PrintStream stream, String text) {
+            this.stream = stream;
+            this.text = text;
+        }
+    }
+
+    private static final ArrayBlockingQueue<Line> queue = new ArrayBlockingQueue<>(CAPACITY);
+    static final AtomicLong droppedLines = new AtomicLong();
+
+    static {
+        Thread printer = new Thread(ChatLog::printLoop, "chat-log");
+        printer.setDaemon(true);
+        printer.start();
+    }
+
+    private ChatLog() {
+    }
+
+    static void info(String text) {
+        log(System.out, text);
+    }
+
+    static void error(String text) {
+        log(System.err, text);
+    }
+
+    private static void log(PrintStream stream, String text) {
+        if (!queue.offer(new Line(stream, text))) droppedLines.incrementAndGet();
+    }
+
+    private static void printLoop() {
+        ArrayList<Line> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                print(batch);
+            }
+        } catch (InterruptedException e) {
+            // daemon thread, ends with the server
+        }
+    }
+
+    // Prints whatever is still queued (shutdown hook)
+    static void flush() {
+        ArrayList<Line> batch = new ArrayList<>();
+        queue.drainTo(batch);
+        print(batch);
+    }
+
+    private static void print(ArrayList<Line> batch) {
+        for (Line line : batch) line.stream.println(line.text);
+        batch.clear();
+    }
+}
@@ -0,0 +1,75 @@
+package com.university.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+// One outgoing chat message or server notice, fanned out to a room's members.
+// Each wire form (legacy line, binary frame) is encoded at most once, the first time
+// a member speaking that protocol needs it, and then shared read-only by all of them.
+class ChatMessage {
+
+    static final String SERVER = "Server";
+
+    final ChatFrame frame;
+    private volatile ByteBuffer line;
+    private volatile ByteBuffer binary;
+
+    // --- Fan-out timing of a live broadcast (see ChatMetrics) ---
+    private static final AtomicIntegerFieldUpdater<ChatMessage> UNSETTLED =
+            AtomicIntegerFieldUpdater.newUpdater(ChatMessage.class, "unsettled");
+    private long receivedAt;
+    private volatile int unsettled = 0; // members whose copy is not yet written (or dropped)
+
+    ChatMessage(ChatFrame frame) {
+        this.frame = frame;
+    }
+
+    static ChatMessage message(String room, long seq, String sender, String text) {
+        return new ChatMessage(new ChatFrame(ChatFrame.MESSAGE, seq, room, sender, text));
+    }
+
+    static ChatMessage notice(String room, String text) {
+        return new ChatMessage(new ChatFrame(ChatFrame.NOTICE, 0, room, SERVER, text));
+    }
+
+    // "sender: text\n", as the line protocol has always sent it. Two threads racing here
+    // just encode the same bytes twice.
+    // Binary clients may send line breaks in their text: they become spaces here, so one
+    // message is always one line and can never forge a "Server: ..." line after it.
+    ByteBuffer line() {
+        ByteBuffer encoded = line;
+        if (encoded == null) {
+            String text = oneLine(frame.sender) + ": " + oneLine(frame.text) + "\n";
+            encoded = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+            line = encoded;
+        }
+        return encoded;
+    }
+
+    static String oneLine(String text) {
+        if (text.indexOf('\n') < 0 && text.indexOf('\r') < 0) return text;
+        return text.replace("\r\n", " ").replace('\r', ' ').replace('\n', ' ');
+    }
+
+    // Before the broadcast: `now` is when the message was read, `members` how many get it
+    void track(long now, int members) {
+        receivedAt = now;
+        unsettled = members; // volatile write publishes receivedAt
+    }
+
+    // One member's copy is written, dropped or discarded with its connection; the last
+    // one times the whole fan-out
+    void settled(long now) {
+        if (UNSETTLED.decrementAndGet(this) == 0) ChatMetrics.fanOutLatency.record(now - receivedAt);
+    }
+
+    ByteBuffer frame() {
+        ByteBuffer encoded = binary;
+        if (encoded == null) {
+            encoded = frame.encode().asReadOnlyBuffer();
+            binary = encoded;
+        }
+        return encoded;
+    }
+}
@@ -0,0 +1,164 @@
+package com.university.server;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Server-wide metrics: connection and room counters, message rates, room sizes and two
+// latency histograms. Counting is LongAdder / LatencyHistogram only, so the hot paths
+// never contend on a lock for it.
+//
+// Read two ways: the STATS admin command (a line sent instead of JOIN, loopback only,
+// e.g. `echo STATS | nc -N localhost 12345`) and a dump file rewritten every interval.
+// Settings: -Dclasspilot.chat.metricsFile=chat-metrics.txt (empty = no file)
+// -Dclasspilot.chat.metricsSeconds=10
+final class ChatMetrics {
+
+    static final String FILE = System.getProperty("classpilot.chat.metricsFile", "chat-metrics.txt");
+    static final long INTERVAL_SECONDS = Math.max(1, Long.getLong("classpilot.chat.metricsSeconds", 10));
+    private static final int LARGEST_ROOMS = 20;
+
+    // --- Counters ---
+    static final LongAdder connectionsOpened = new LongAdder();
+    static final LongAdder connectionsClosed = new LongAdder();
+    static final LongAdder joins = new LongAdder();   // including resumes
+    static final LongAdder resumes = new LongAdder();
+    static final LongAdder leaves = new LongAdder();
+    static final LongAdder messagesIn = new LongAdder(); // accepted into a room
+    static final LongAdder linesOut = new LongAdder();   // written to a client, any kind
+
+    // --- Latency, from reading a message to ... ---
+    static final LatencyHistogram queuedLatency = new LatencyHistogram(); // ... it is queued for every member
+    static final LatencyHistogram fanOutLatency = new LatencyHistogram(); // ... the last member's copy is written
+
+    private static final LocalDateTime started = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+    private static volatile Map<String, ChatRoom> rooms = Map.of();
+
+    // --- Rates over the last interval (guarded by the class lock) ---
+    private static long sampledAt = System.nanoTime();
+    private static long sampledIn = 0;
+    private static long sampledOut = 0;
+    private static double inPerSecond = 0;
+    private static double outPerSecond = 0;
+
+    private ChatMetrics() {
+    }
+
+    // Starts sampling rates and writing the dump file for the server's active rooms
+    static void start(Map<String, ChatRoom> activeRooms) {
+        rooms = activeRooms;
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "chat-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(ChatMetrics::sample, INTERVAL_SECONDS, INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static void sample() {
+        synchronized (ChatMetrics.class) {
+            long now = System.nanoTime();
+            long in = messagesIn.sum();
+            long out = linesOut.sum();
+            double seconds = Math.max(1, now - sampledAt) / 1e9;
+            inPerSecond = (in - sampledIn) / seconds;
+            outPerSecond = (out - sampledOut) / seconds;
+            sampledAt = now;
+            sampledIn = in;
+            sampledOut = out;
+        }
+        if (!FILE.isEmpty()) writeFile();
+    }
+
+    // Replaces the dump file in one step, so a reader never sees half a report
+    private static void writeFile() {
+        Path file = Paths.get(FILE).toAbsolutePath();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.writeString(temp, report(), StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            ChatLog.error("Could not write chat metrics to " + file + ": " + e.getMessage());
+        }
+    }
+
+    // ==========================
+    // REPORT
+    // ==========================
+    static String report() {
+        double in;
+        double out;
+        synchronized (ChatMetrics.class) {
+            in = inPerSecond;
+            out = outPerSecond;
+        }
+        long opened = connectionsOpened.sum();
+        long closed = connectionsClosed.sum();
+        Duration up = Duration.between(started, LocalDateTime.now());
+
+        StringBuilder report = new StringBuilder();
+        line(report, "ClassPilot chat server, up %dd %02d:%02d:%02d since %s",
+                up.toDays(), up.toHoursPart(), up.toMinutesPart(), up.toSecondsPart(), started);
+        line(report, "connections    %d open (%d opened, %d closed)", opened - closed, opened, closed);
+        line(report, "reaped         %d silent, %d stalled, %d never joined",
+                ChatServer.reapedSilent.get(), ChatServer.reapedStalled.get(), ChatServer.reapedAnonymous.get());
+        line(report, "rooms          %d active (%d joins of which %d resumed, %d leaves)",
+                rooms.size(), joins.sum(), resumes.sum(), leaves.sum());
+        line(report, "messages in    %d, %.1f/s over the last %d s", messagesIn.sum(), in, INTERVAL_SECONDS);
+        line(report, "lines out      %d, %.1f/s over the last %d s", linesOut.sum(), out, INTERVAL_SECONDS);
+        line(report, "throttled      %d by client limit, %d by room limit",
+                ChatServer.throttledByClient.get(), ChatServer.throttledByRoom.get());
+        line(report, "slow clients   %d lines dropped, %d lagging now, %d disconnected",
+                OutboundQueue.droppedLines.get(), OutboundQueue.laggingClients.get(), OutboundQueue.slowDisconnects.get());
+        line(report, "log            %d lines dropped", ChatLog.droppedLines.get());
+        line(report, "cluster        %s", ChatCluster.describe());
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        line(report, "process        cpu %.2f s, heap %.1f of %.1f MB used, %d threads",
+                processCpuNanos() / 1e9, heap.getUsed() / 1048576.0, heap.getCommitted() / 1048576.0,
+                ManagementFactory.getThreadMXBean().getThreadCount());
+
+        line(report, "");
+        line(report, "latency (us)   %s", LatencyHistogram.header());
+        line(report, "  queued       %s", queuedLatency.summary());
+        line(report, "  fan-out      %s", fanOutLatency.summary());
+
+        ArrayList<Map.Entry<String, Integer>> sizes = new ArrayList<>();
+        for (Map.Entry<String, ChatRoom> room : rooms.entrySet()) {
+            sizes.add(Map.entry(room.getKey(), room.getValue().members().length));
+        }
+        sizes.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+        line(report, "");
+        line(report, "members        (largest %d of %d rooms)", Math.min(LARGEST_ROOMS, sizes.size()), sizes.size());
+        for (int i = 0; i < sizes.size() && i < LARGEST_ROOMS; i++) {
+            line(report, "  %6d  %s", sizes.get(i).getValue(), sizes.get(i).getKey());
+        }
+        return report.toString();
+    }
+
+    // CPU time of this JVM so far, 0 where the platform does not tell
+    static long processCpuNanos() {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            return os.getProcessCpuTime();
+        }
+        return 0;
+    }
+
+    private static void line(StringBuilder report, String format, Object... args) {
+        report.append(String.format(Locale.ROOT, format, args)).append('\n');
+    }
+}
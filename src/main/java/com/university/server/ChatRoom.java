@@ -0,0 +1,38 @@
+package com.university.server;
+
+import java.util.Arrays;
+
+// Members of one chat room as a copy-on-write array.
+// Broadcasts read the current array without locking; join / leave publish a new one.
+// add / remove are only called inside ChatServer's per-room ConcurrentHashMap.compute,
+// which already serializes changes to the same room.
+class ChatRoom {
+
+    private static final ChatConnection[] EMPTY = new ChatConnection[0];
+
+    private volatile ChatConnection[] members = EMPTY;
+
+    ChatConnection[] members() { return members; }
+
+    boolean isEmpty() { return members.length == 0; }
+
+    void add(ChatConnection client) {
+        ChatConnection[] current = members;
+        ChatConnection[] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = client;
+        members = next;
+    }
+
+    void remove(ChatConnection client) {
+        ChatConnection[] current = members;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == client) {
+                ChatConnection[] next = new ChatConnection[current.length - 1];
+                System.arraycopy(current, 0, next, 0, i);
+                System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                members = next;
+                return;
+            }
+        }
+    }
+}
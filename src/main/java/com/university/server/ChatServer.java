@@ -2,106 +2,718 @@ package com.university.server;
 
 import java.io.*;
 import java.net.*;
-import java.util.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ChatServer {
-    private static final int PORT = 12345;
+    // -Dclasspilot.chat.port; see ChatCluster for running several servers as one
+    private static final int PORT = ChatCluster.PORT;
 
-    // Stores active clients grouped by room names
-    private static Map<String, List<ClientHandler>> groupClients = new HashMap<>();
+    // Active rooms by name. Join / leave only lock their own room's map entry, and a room
+    // is dropped in the same step as its last member, so a join can never land in a
+    // room that is being removed.
+    private static final ConcurrentHashMap<String, ChatRoom> rooms = new ConcurrentHashMap<>();
 
+    // Message history per room, kept for RoomHistory.IDLE_MS after the room empties (a
+    // later JOIN reopens it from disk)
+    private static final ConcurrentHashMap<String, RoomHistory> histories = new ConcurrentHashMap<>();
+
+    // Rate limit of each room, all members together (used under the room's history lock,
+    // dropped with the history)
+    private static final ConcurrentHashMap<String, TokenBucket> roomLimits = new ConcurrentHashMap<>();
+
+    // Rooms one connection may subscribe to at once
+    static final int MAX_ROOMS_PER_CLIENT = 64;
+
+    // Rooms the server keeps at once (histories, including recently emptied ones): each
+    // costs a ring of RoomHistory.RESUME_SIZE messages. -Dclasspilot.chat.maxRooms
+    static final int MAX_ROOMS = Math.max(1, Integer.getInteger("classpilot.chat.maxRooms", 10000));
+
+    // Engine: "nio" (default, a few selector threads), "virtual" (one virtual thread per
+    // client) or "threads" (one platform thread per client).
+    // Pick with --engine=virtual or -Dclasspilot.chat.engine=virtual;
+    // -Dclasspilot.chat.ioThreads sets the number of NIO event loops.
     public static void main(String[] args) {
-        System.out.println("--- ClassPilot Chat Server Started ---");
+        String engine = System.getProperty("classpilot.chat.engine", "nio");
+        for (String arg : args) {
+            if (arg.startsWith("--engine=")) engine = arg.substring("--engine=".length());
+        }
+
+        String problem = ChatCluster.checkConfiguration();
+        if (problem != null) {
+            System.err.println("Cannot start the chat server: " + problem);
+            return;
+        }
+        System.out.println("--- ClassPilot Chat Server Started (" + engine + ", port " + PORT + ", " + ChatCluster.describe() + ") ---");
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (RoomHistory history : histories.values()) history.flush();
+            ChatLog.flush();
+        }, "chat-shutdown"));
+        ChatMetrics.start(rooms);
+        try {
+            if (engine.equals("threads")) {
+                runThreadPerClient(Thread.ofPlatform().name("chat-client-", 0));
+            } else if (engine.equals("virtual")) {
+                runThreadPerClient(Thread.ofVirtual().name("chat-client-", 0));
+            } else {
+                int ioThreads = Integer.getInteger("classpilot.chat.ioThreads",
+                        Runtime.getRuntime().availableProcessors());
+                new NioChatServer(PORT, ioThreads).run();
+            }
+        } catch (IOException e) {
+            ChatLog.error("Chat server stopped on port " + PORT + ": " + e.getMessage());
+        }
+    }
+
+    private static void runThreadPerClient(Thread.Builder threads) throws IOException {
+        ThreadFactory factory = threads.factory();
         try (ServerSocket serverSocket = new ServerSocket(PORT)) {
             while (true) {
                 Socket clientSocket = serverSocket.accept();
-                System.out.println("New Client Connected!");
+                ChatLog.info("New Client Connected!");
 
-                // Handle each client in a separate thread
-                new Thread(new ClientHandler(clientSocket)).start();
+                // Handle each client in a separate (platform or virtual) thread
+                factory.newThread(new ClientHandler(clientSocket, factory)).start();
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
     }
 
-    private static class ClientHandler implements Runnable {
+    // ==========================
+    // PROTOCOL (shared by all engines)
+    // ==========================
+    // Longest accepted protocol line; a client sending more without a newline is dropped
+    static final int MAX_LINE = 64 * 1024;
+
+    // Legacy line protocol: "JOIN:GroupName:UserName" must come first, then "MSG:text"
+    // lines, all for that one room. "STATS" instead of JOIN is the admin command.
+    static void onLine(ChatConnection client, String line) {
+        long now = System.nanoTime();
+        client.lastHeard = now;
+        if (client.groupName == null) {
+            if (line.equals("STATS")) {
+                stats(client);
+            } else if (line.startsWith("JOIN:")) {
+                String[] parts = line.split(":", 3);
+                if (parts.length < 3) return;
+                client.clientName = parts[2];
+                if (!RoomHistory.isValidName(parts[1]) || !ChatFrame.isValidName(parts[1]) || !ChatFrame.isValidName(parts[2])) {
+                    refuseName(client, parts[1]); // it may JOIN again
+                    return;
+                }
+                client.groupName = parts[1];
+                subscribe(client, client.groupName, -1);
+            }
+            return;
+        }
+
+        if (line.startsWith("MSG:") && allow(client, client.groupName, now)) {
+            onMessage(client, client.groupName, client.clientName, line.substring(4), now);
+        }
+    }
+
+    // Binary protocol (see ChatFrame): the hello, then SUBSCRIBE / UNSUBSCRIBE / MESSAGE
+    // frames for any number of rooms. The first SUBSCRIBE names the sender.
+    // Returns false if the hello is not one this server can answer.
+    static boolean onHello(ChatConnection client, byte[] hello) {
+        int version = Math.min(ChatFrame.helloVersion(hello), ChatFrame.VERSION);
+        if (version < 1) return false;
+
+        client.binary = true;
+        client.version = version;
+        client.lastHeard = System.nanoTime();
+        client.send(ChatFrame.hello((byte) version));
+        return true;
+    }
+
+    // A RESUME is a SUBSCRIBE that continues at frame.seq instead of replaying history
+    static void onFrame(ChatConnection client, ChatFrame frame) {
+        long now = System.nanoTime();
+        client.lastHeard = now; // a PONG needs nothing more
+        if (frame.type == ChatFrame.PING) {
+            client.send(new ChatFrame(ChatFrame.PONG, frame.seq, "", ChatMessage.SERVER, "").encode());
+            return;
+        }
+        if (client.clientName == null) {
+            if (frame.type == ChatFrame.PEER) {
+                acceptPeer(client, frame.sender, frame.text);
+                return;
+            }
+            if (frame.type != ChatFrame.SUBSCRIBE && frame.type != ChatFrame.RESUME) return;
+            client.clientName = frame.sender;
+        }
+
+        // A peer relays for many clients, each already rate-limited by its own node
+        switch (frame.type) {
+            case ChatFrame.SUBSCRIBE:
+                if (client.peer || allowJoin(client, frame.room, now)) subscribe(client, frame.room, -1);
+                break;
+            case ChatFrame.RESUME:
+                if (client.peer || allowJoin(client, frame.room, now)) subscribe(client, frame.room, Math.max(0, frame.seq));
+                break;
+            case ChatFrame.UNSUBSCRIBE:
+                unsubscribe(client, frame.room);
+                break;
+            case ChatFrame.MESSAGE:
+                if (client.peer) {
+                    onMessage(client, frame.room, frame.sender, frame.text, now);
+                } else if (allow(client, frame.room, now)) {
+                    onMessage(client, frame.room, client.clientName, frame.text, now);
+                }
+                break;
+            case ChatFrame.NOTICE:
+                if (client.peer && client.rooms.contains(frame.room)) broadcast(frame.room, frame.text);
+                break;
+            default:
+                break;
+        }
+    }
+
+    // resumeFrom: -1 for a new member, else the first sequence number it has not seen
+    private static void subscribe(ChatConnection client, String groupName, long resumeFrom) {
+        if (!RoomHistory.isValidName(groupName) || !ChatFrame.isValidName(groupName) || !ChatFrame.isValidName(client.clientName)) {
+            refuseName(client, groupName);
+            return;
+        }
+        if (client.peer && ChatCluster.remoteOwner(groupName) != null) {
+            ChatLog.error(client.clientName + " relays " + groupName + " to the wrong node: do the cluster lists differ?");
+            return;
+        }
+        if (client.rooms.size() >= MAX_ROOMS_PER_CLIENT && !client.peer) {
+            ChatLog.error(client.clientName + " is already in " + MAX_ROOMS_PER_CLIENT + " rooms, not joining " + groupName);
+            client.send(ChatMessage.notice(groupName, "You are in " + MAX_ROOMS_PER_CLIENT
+                    + " rooms already, the most one connection may be in; you were not joined."));
+            return;
+        }
+        // Not for peers: each node caps the rooms its own clients open
+        if (!client.peer && !histories.containsKey(groupName) && histories.size() >= MAX_ROOMS) {
+            ChatLog.error("Server has " + MAX_ROOMS + " rooms, " + client.clientName + " cannot open " + groupName);
+            client.send(ChatMessage.notice(groupName, "The server has too many rooms open right now; you were not joined."));
+            return;
+        }
+        if (!client.rooms.add(groupName)) return;
+
+        // Join and replay under the history lock: a message is either in the
+        // replay or reaches the new member live, never both or neither
+        RoomHistory history = lockHistory(groupName, true);
+        boolean complete = true;
+        boolean[] relayed = {false};
+        try {
+            rooms.compute(groupName, (name, room) -> {
+                if (room == null) room = new ChatRoom();
+                room.add(client);
+                relayed[0] = ChatCluster.relay(name, resumeFrom);
+                return room;
+            });
+            if (relayed[0]) {
+                // Just subscribed upstream: the owner replays or resumes the room for this
+                // client, and refills the mirror on the way
+                history.forget();
+            } else if (resumeFrom < 0) {
+                history.replayTo(client);
+            } else {
+                complete = history.resumeTo(client, resumeFrom);
+            }
+            if (client.version >= 4 && !relayed[0]) {
+                // Where the client stands once the replay is through: its resume point
+                client.send(new ChatFrame(ChatFrame.SUBSCRIBE, history.nextSeq(), groupName, ChatMessage.SERVER, "").encode());
+            }
+        } finally {
+            history.lock.unlock();
+        }
+        // Closed meanwhile (onClose may have missed this room)
+        if (client.outbound.isClosed()) {
+            leave(client, groupName);
+            return;
+        }
+
+        if (client.peer) {
+            ChatLog.info(client.clientName + " relays group: " + groupName);
+            return;
+        }
+        ChatMetrics.joins.increment();
+        if (resumeFrom >= 0) {
+            // Back from a dropped connection: no join notice, so a reconnect storm after a
+            // Wi-Fi blip costs each room its missed messages, not members x notices
+            ChatMetrics.resumes.increment();
+            ChatLog.info(client.clientName + " resumed group: " + groupName + " at " + resumeFrom);
+            if (!complete) client.send(ChatMessage.notice(groupName, "Some messages sent while you were away are no longer available."));
+            return;
+        }
+        ChatLog.info(client.clientName + " joined group: " + groupName);
+        broadcast(groupName, client.clientName + " has joined the chat.");
+    }
+
+    // Names longer than ChatFrame.MAX_NAME are cut short in the log and the notice, control
+    // characters replaced
+    private static void refuseName(ChatConnection client, String groupName) {
+        String room = shorten(groupName);
+        String name = shorten(client.clientName);
+        ChatLog.error(name + " tried to join a room called \"" + room + "\"");
+        if (!client.peer) {
+            client.send(ChatMessage.notice(room, "Room and user names must be 1 to " + ChatFrame.MAX_NAME
+                    + " bytes long, without control characters, and not \".\" or \"..\"; you were not joined."));
+        }
+    }
+
+    private static String shorten(String name) {
+        String shown = ChatFrame.nameFits(name) ? name : name.substring(0, ChatFrame.MAX_NAME / 4) + "...";
+        return shown.replaceAll("\\p{Cntrl}", "?");
+    }
+
+    private static void unsubscribe(ChatConnection client, String groupName) {
+        if (!client.rooms.remove(groupName)) return;
+        leave(client, groupName);
+        ChatMetrics.leaves.increment();
+        ChatLog.info(client.clientName + " left group: " + groupName);
+    }
+
+    private static void leave(ChatConnection client, String groupName) {
+        boolean[] emptied = {false};
+        rooms.computeIfPresent(groupName, (name, room) -> {
+            room.remove(client);
+            if (!room.isEmpty()) return room;
+            ChatCluster.unrelay(name);
+            emptied[0] = true;
+            return null;
+        });
+        if (emptied[0]) retireWhenIdle(groupName);
+    }
+
+    // Otherwise every room anyone ever joined would keep its ring and rate limit for good
+    private static void retireWhenIdle(String groupName) {
+        RoomHistory history = histories.get(groupName);
+        if (history == null) return;
+        history.retireWhenIdle(() -> rooms.containsKey(groupName), () -> {
+            histories.remove(groupName, history);
+            roomLimits.remove(groupName);
+        });
+    }
+
+    private static void onMessage(ChatConnection client, String groupName, String sender, String text, long now) {
+        if (!client.rooms.contains(groupName)) return;
+        // Every member's frame must fit, and a line client's MSG line may be longer
+        if (!ChatFrame.fits(groupName, sender, text)) {
+            if (!client.peer) client.send(ChatMessage.notice(groupName, "Your message is too long and was not sent."));
+            return;
+        }
+        if (ChatCluster.remoteOwner(groupName) != null) {
+            ChatCluster.message(groupName, sender, text); // the owner numbers it and sends it back
+            return;
+        }
+
+        // Queued for every member under the lock too: two senders' messages then reach all
+        // queues in sequence order, which a cluster node's mirror of the room relies on.
+        // Queuing never waits on a client, so the lock is only held for the copies.
+        RoomHistory history = lockHistory(groupName, true);
+        boolean accepted;
+        try {
+            TokenBucket roomLimit = roomLimits.computeIfAbsent(groupName, name -> new TokenBucket(ROOM_RATE, ROOM_BURST));
+            accepted = roomLimit.tryTake(now);
+            if (accepted) {
+                ChatMessage message = history.append(sender, text);
+                ChatRoom room = rooms.get(groupName);
+                ChatConnection[] members = room == null ? new ChatConnection[0] : room.members();
+                message.track(now, members.length);
+                for (ChatConnection member : members) {
+                    member.deliver(message);
+                }
+            }
+        } finally {
+            history.lock.unlock();
+        }
+        if (!accepted) {
+            refuse(client, groupName, now, throttledByRoom, "This room is too busy right now; your message was not sent.");
+            return;
+        }
+        ChatMetrics.messagesIn.increment();
+        ChatMetrics.queuedLatency.record(System.nanoTime() - now);
+    }
+
+    // A room owned by another cluster node gets a mirror of the owner's history
+    private static RoomHistory history(String groupName) {
+        return histories.computeIfAbsent(groupName,
+                name -> ChatCluster.remoteOwner(name) != null ? RoomHistory.mirror(name) : RoomHistory.open(name));
+    }
+
+    // The room's history, locked; with create false, null if the room has none. Waits out
+    // a retiring history (RoomHistory.retireWhenIdle) until it has left the map.
+    private static RoomHistory lockHistory(String groupName, boolean create) {
+        while (true) {
+            RoomHistory history = create ? history(groupName) : histories.get(groupName);
+            if (history == null) return null;
+            history.lock.lock();
+            if (!history.isRetired()) return history;
+            history.lock.unlock();
+            Thread.yield();
+        }
+    }
+
+    static void onOpen(ChatConnection client) {
+        ChatMetrics.connectionsOpened.increment();
+        watch(client, IDLE_NANOS);
+    }
+
+    static void onClose(ChatConnection client) {
+        TimerWheel.Timeout heartbeat = client.heartbeat;
+        if (heartbeat != null) heartbeat.cancel();
+        ChatMetrics.connectionsClosed.increment();
+        ChatLog.info(client.clientName + " disconnected.");
+        for (String groupName : client.rooms) {
+            leave(client, groupName);
+            ChatMetrics.leaves.increment();
+        }
+    }
+
+    // Admin: answers with the metrics report, then closes (loopback clients only)
+    private static void stats(ChatConnection client) {
+        InetAddress address = client.remoteAddress();
+        if (address == null || !address.isLoopbackAddress()) {
+            ChatLog.error("Refused STATS from " + address);
+            client.close();
+            return;
+        }
+        client.send(ByteBuffer.wrap(ChatMetrics.report().getBytes(StandardCharsets.UTF_8)));
+        client.closeWhenSent();
+    }
+
+    // Iterates the room's current member array: no lock is held while writing, so a slow
+    // client only delays its own room's broadcaster, never other rooms or joins.
+    // The message is encoded once per protocol and the same bytes are queued for every member.
+    // Server notices go out this way and are not kept in the room's history; chat
+    // messages go out the same way in onMessage, under the room's lock and timed for the metrics.
+    private static void broadcast(String groupName, String notice) {
+        if (ChatCluster.remoteOwner(groupName) != null) {
+            ChatCluster.notice(groupName, notice); // to every member, through the owner
+            return;
+        }
+        ChatRoom room = rooms.get(groupName);
+        if (room == null) return;
+
+        ChatMessage message = ChatMessage.notice(groupName, notice);
+        for (ChatConnection client : room.members()) {
+            client.send(message);
+        }
+    }
+
+    // ==========================
+    // CLUSTER (see ChatCluster)
+    // ==========================
+    // The first frame of another node's PeerLink
+    private static void acceptPeer(ChatConnection client, String node, String secret) {
+        if (!ChatFrame.isValidName(node)) {
+            ChatLog.error("Refused cluster link from " + client.remoteAddress() + ": malformed node name");
+            client.close();
+            return;
+        }
+        if (!ChatCluster.mayLink(client.remoteAddress(), node, secret)) {
+            ChatLog.error("Refused cluster link from " + client.remoteAddress() + " (" + node + ")");
+            client.close();
+            return;
+        }
+        client.peer = true;
+        client.clientName = "node " + node;
+        ChatLog.info("Cluster node " + node + " linked");
+    }
+
+    // Link reader: a frame from the owner of a room this node relays. Messages go through
+    // the room's mirror under its lock, like onMessage, so members joining here get each
+    // one exactly once. Frames for a room that no longer has a mirror (its members all
+    // left, and it was retired) have no one to go to.
+    static void onRelayed(ChatFrame frame) {
+        long now = System.nanoTime();
+        RoomHistory history = lockHistory(frame.room, false);
+        if (history == null) return;
+        ChatMessage message = new ChatMessage(frame);
+        ChatConnection[] members;
+        try {
+            if (frame.type == ChatFrame.MESSAGE && !history.mirror(message)) return;
+            if (frame.type == ChatFrame.SUBSCRIBE) history.skipTo(frame.seq);
+            ChatRoom room = rooms.get(frame.room);
+            members = room == null ? new ChatConnection[0] : room.members();
+        } finally {
+            history.lock.unlock();
+        }
+
+        switch (frame.type) {
+            case ChatFrame.MESSAGE:
+                ChatCluster.relayedDown.increment();
+                message.track(now, members.length);
+                for (ChatConnection member : members) member.deliver(message);
+                break;
+            case ChatFrame.NOTICE:
+                for (ChatConnection member : members) member.send(message);
+                break;
+            case ChatFrame.SUBSCRIBE:
+                // The owner's confirmation: every member here has seen the room up to it
+                ByteBuffer confirmation = message.frame();
+                for (ChatConnection member : members) {
+                    if (member.version >= 4) member.send(confirmation);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Link writer, once the link is closed: this node cannot serve the link's rooms any
+    // more, so their members here are disconnected and their clients reconnect (and get a
+    // new link) with backoff
+    static void onLinkLost(PeerLink link) {
+        int dropped = 0;
+        for (String groupName : link.rooms) {
+            ChatRoom room = rooms.get(groupName);
+            if (room == null) continue;
+            for (ChatConnection member : room.members()) {
+                member.close();
+                dropped++;
+            }
+        }
+        if (dropped > 0) ChatLog.info("Disconnected " + dropped + " members of rooms on " + link.node);
+    }
+
+    // ==========================
+    // RATE LIMITS
+    // ==========================
+    // Every message is fanned out to the whole room, so one client pasting in a loop costs
+    // the server its own rate times the room size. Token buckets are checked on the read
+    // path, before anything is recorded or broadcast:
+    //   per connection: MSG lines and MESSAGE frames
+    //   per connection, separately: SUBSCRIBE / RESUME frames (each replays history), with
+    //     a burst of MAX_ROOMS_PER_CLIENT so a reconnecting client gets all its rooms back
+    //   per room: messages from all members together
+    // A refused message is dropped; the sender is told at most every THROTTLE_NOTICE_NANOS.
+    // A refused join is told every time, naming the room it did not get.
+    // Settings (messages or joins per second and burst; rate 0 = unlimited):
+    // -Dclasspilot.chat.clientRate=5 -Dclasspilot.chat.clientBurst=20 -Dclasspilot.chat.joinRate=2
+    // -Dclasspilot.chat.roomRate=50 -Dclasspilot.chat.roomBurst=200
+    static final int CLIENT_RATE = Math.max(0, Integer.getInteger("classpilot.chat.clientRate", 5));
+    static final int CLIENT_BURST = Math.max(1, Integer.getInteger("classpilot.chat.clientBurst", 20));
+    static final int JOIN_RATE = Math.max(0, Integer.getInteger("classpilot.chat.joinRate", 2));
+    static final int ROOM_RATE = Math.max(0, Integer.getInteger("classpilot.chat.roomRate", 50));
+    static final int ROOM_BURST = Math.max(1, Integer.getInteger("classpilot.chat.roomBurst", 200));
+    private static final long THROTTLE_NOTICE_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    // --- Server-wide counters ---
+    static final AtomicLong throttledByClient = new AtomicLong();
+    static final AtomicLong throttledByRoom = new AtomicLong();
+
+    // Reader thread: takes one of the client's tokens
+    private static boolean allow(ChatConnection client, String groupName, long now) {
+        if (client.sendLimit.tryTake(now)) return true;
+        refuse(client, groupName, now, throttledByClient, "You are sending messages too fast; some were not sent.");
+        return false;
+    }
+
+    // Reader thread: takes one of the client's join tokens
+    private static boolean allowJoin(ChatConnection client, String groupName, long now) {
+        if (client.joinLimit.tryTake(now)) return true;
+        throttledByClient.incrementAndGet();
+        ChatLog.info("Throttling " + client.clientName + ": joining rooms too fast, not joining " + groupName);
+        client.send(ChatMessage.notice(groupName, "You are joining rooms too fast; you were not joined."));
+        return false;
+    }
+
+    private static void refuse(ChatConnection client, String groupName, long now, AtomicLong counter, String notice) {
+        counter.incrementAndGet();
+        if (client.peer) return; // the notice would reach everyone the peer relays for
+        if (++client.throttled > 1 && now - client.throttleNoticedAt < THROTTLE_NOTICE_NANOS) return;
+
+        client.throttleNoticedAt = now;
+        ChatLog.info("Throttling " + client.clientName + " in " + groupName + " (" + client.throttled + " refused so far, "
+                + throttledByClient.get() + " by client limit and " + throttledByRoom.get() + " by room limit server-wide)");
+        client.send(ChatMessage.notice(groupName, notice));
+    }
+
+    // ==========================
+    // HEARTBEATS
+    // ==========================
+    // Clients that vanish without closing (a laptop lid shut, Wi-Fi gone) never send a
+    // FIN, so their connection would sit in its rooms forever. Every connection has one
+    // liveness check in the timer wheel, pushed back lazily: hearing from a client only
+    // stamps lastHeard, and the check reschedules itself when it finds recent traffic.
+    // A connection is reaped when
+    //   - it has been silent IDLE_NANOS and does not answer a PING within PING_TIMEOUT_NANOS
+    //     (protocol version 3; older and line clients cannot be pinged),
+    //   - its queued lines have not moved for IDLE_NANOS (the peer stopped reading), or
+    //   - it has not joined anything within IDLE_NANOS.
+    // Settings: -Dclasspilot.chat.idleSeconds=30 -Dclasspilot.chat.pingTimeoutSeconds=10
+    static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(Math.max(1, Long.getLong("classpilot.chat.idleSeconds", 30)));
+    static final long PING_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(Math.max(1, Long.getLong("classpilot.chat.pingTimeoutSeconds", 10)));
+
+    // 100 ms ticks, 512 buckets: one revolution is 51.2 s, longer than the usual idle check
+    private static final TimerWheel timers = new TimerWheel("chat-heartbeat", 100, 512);
+    private static final ByteBuffer PING = new ChatFrame(ChatFrame.PING, 0, "", ChatMessage.SERVER, "").encode().asReadOnlyBuffer();
+
+    // --- Server-wide counters ---
+    static final AtomicLong reapedSilent = new AtomicLong();    // no answer to PING
+    static final AtomicLong reapedStalled = new AtomicLong();   // not reading its lines
+    static final AtomicLong reapedAnonymous = new AtomicLong(); // never joined
+
+    private static void watch(ChatConnection client, long delayNanos) {
+        client.heartbeat = timers.schedule(() -> checkAlive(client), delayNanos);
+    }
+
+    // Timer thread
+    private static void checkAlive(ChatConnection client) {
+        if (client.outbound.isClosed()) return;
+
+        long now = System.nanoTime();
+        if (client.outbound.stalledNanos(now) >= IDLE_NANOS) {
+            reap(client, reapedStalled, "not reading");
+            return;
+        }
+        long quiet = now - client.lastHeard;
+        if (quiet < IDLE_NANOS) {
+            client.pinged = false;
+            watch(client, IDLE_NANOS - quiet);
+        } else if (client.clientName == null) {
+            reap(client, reapedAnonymous, "never joined");
+        } else if (client.version < 3) {
+            watch(client, IDLE_NANOS); // silence is normal for a listener that cannot be pinged
+        } else if (!client.pinged) {
+            client.pinged = true;
+            client.send(PING);
+            watch(client, PING_TIMEOUT_NANOS);
+        } else {
+            reap(client, reapedSilent, "no answer to ping");
+        }
+    }
+
+    private static void reap(ChatConnection client, AtomicLong counter, String reason) {
+        counter.incrementAndGet();
+        long total = reapedSilent.get() + reapedStalled.get() + reapedAnonymous.get();
+        ChatLog.info("Reaping " + client.clientName + " (" + reason + "), " + total + " reaped so far: "
+                + reapedSilent.get() + " silent, " + reapedStalled.get() + " stalled, " + reapedAnonymous.get() + " never joined");
+        client.close();
+    }
+
+    // ==========================
+    // THREAD-PER-CLIENT ENGINE (platform or virtual threads)
+    // ==========================
+    // Each client has a reader thread and a writer thread. Broadcasts only enqueue into
+    // the client's OutboundQueue; the writer drains it, so a slow link blocks nobody else.
+    private static class ClientHandler extends ChatConnection implements Runnable {
+        private static final int WRITE_BATCH = 64; // most queued lines merged into one write
         private Socket socket;
-        private BufferedReader in;
-        private PrintWriter out;
-        private String clientName;
-        private String groupName;
+        private final ThreadFactory threads;
+        private WritableByteChannel out;
+        private final AtomicBoolean closed = new AtomicBoolean();
 
-        public ClientHandler(Socket socket) {
+        public ClientHandler(Socket socket, ThreadFactory threads) {
             this.socket = socket;
+            this.threads = threads;
         }
 
         @Override
         public void run() {
+            onOpen(this);
             try {
-                in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-                out = new PrintWriter(socket.getOutputStream(), true);
-
-                // 1. Handle JOIN Request
-                // Protocol: "JOIN:GroupName:UserName"
-                String request = in.readLine();
-                if (request != null && request.startsWith("JOIN:")) {
-                    String[] parts = request.split(":");
-                    this.groupName = parts[1];
-                    this.clientName = parts[2];
-
-                    // Thread-safe addition to the group
-                    synchronized (groupClients) {
-                        groupClients.computeIfAbsent(groupName, k -> new ArrayList<>()).add(this);
-                    }
+                InputStream input = new BufferedInputStream(socket.getInputStream());
+                out = Channels.newChannel(socket.getOutputStream());
+                threads.newThread(this::writeLoop).start();
 
-                    System.out.println(clientName + " joined group: " + groupName);
-                    broadcast("Server: " + clientName + " has joined the chat.", true);
+                // The first byte tells the protocols apart (a hello starts with 0)
+                input.mark(1);
+                int first = input.read();
+                input.reset();
+                if (first == 0) {
+                    readFrames(new DataInputStream(input));
+                } else if (first != -1) {
+                    readLines(input);
                 }
-
-                // 2. Message Loop
-                String message;
-                while ((message = in.readLine()) != null) {
-                    System.out.println("DEBUG: Server received: " + message);
-
-                    if (message.startsWith("MSG:")) {
-                        String content = message.substring(4);
-                        broadcast(clientName + ": " + content, false);
-                    }
-                }
-
             } catch (IOException e) {
-                System.out.println(clientName + " disconnected.");
+                // connection dropped
             } finally {
-                closeConnection();
+                if (!outbound.isFinishing()) close(); // else the writer closes once it is done
             }
         }
 
-        private void broadcast(String msg, boolean isServerMsg) {
-            synchronized (groupClients) {
-                List<ClientHandler> clients = groupClients.get(groupName);
-                if (clients != null) {
-                    for (ClientHandler client : clients) {
-                        client.out.println(msg);
-                    }
+        // Splits lines at '\n' like NioChatServer, with the same MAX_LINE
+        private void readLines(InputStream in) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\n') {
+                    byte[] bytes = line.toByteArray();
+                    int length = bytes.length;
+                    if (length > 0 && bytes[length - 1] == '\r') length--;
+                    line.reset();
+                    onLine(this, new String(bytes, 0, length, StandardCharsets.UTF_8));
+                } else if (line.size() < MAX_LINE) {
+                    line.write(b);
+                } else {
+                    ChatLog.error("Line too long, dropping " + clientName);
+                    return;
                 }
             }
         }
 
-        private void closeConnection() {
+        private void readFrames(DataInputStream in) throws IOException {
+            byte[] hello = new byte[ChatFrame.HELLO_LENGTH];
+            in.readFully(hello);
+            if (!onHello(this, hello)) return;
+
+            ChatFrame frame;
+            while ((frame = ChatFrame.read(in)) != null) {
+                onFrame(this, frame);
+            }
+        }
+
+        // Writer thread: blocking socket writes happen only here. Everything queued since
+        // the last write is copied into one chunk and written with a single call.
+        private void writeLoop() {
+            ByteBuffer[] batch = new ByteBuffer[WRITE_BATCH];
             try {
-                socket.close();
-            } catch (IOException e) { e.printStackTrace(); }
-
-            synchronized (groupClients) {
-                List<ClientHandler> clients = groupClients.get(groupName);
-                if (clients != null) {
-                    clients.remove(this);
-                    if (clients.isEmpty()) {
-                        groupClients.remove(groupName);
+                int count;
+                while ((count = outbound.take(batch)) >= 0) {
+                    ByteBuffer chunk = batch[0];
+                    if (count > 1) {
+                        int size = 0;
+                        for (int i = 0; i < count; i++) size += batch[i].remaining();
+                        chunk = ByteBuffer.allocate(size);
+                        for (int i = 0; i < count; i++) chunk.put(batch[i]);
+                        chunk.flip();
+                    }
+                    Arrays.fill(batch, 0, count, null);
+                    try {
+                        while (chunk.hasRemaining()) out.write(chunk); // shared read-only bytes, no array access
+                    } finally {
+                        outbound.written();
                     }
                 }
+            } catch (IOException | InterruptedException e) {
+                // connection dropped
             }
+            close();
+        }
+
+        @Override
+        void startWriting() {
+            // the writer thread is already waiting on the queue
+        }
+
+        @Override
+        InetAddress remoteAddress() {
+            return socket.getInetAddress();
+        }
+
+        @Override
+        void close() {
+            if (!closed.compareAndSet(false, true)) return;
+
+            outbound.close();
+            try {
+                socket.close();
+            } catch (IOException ignored) { }
+            onClose(this);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,112 @@
+package com.university.server;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+// Micro-benchmark of a room broadcast's fan-out, without sockets: one message queued for
+// every member of rooms of line-protocol clients, into their real OutboundQueues, which
+// are drained every DRAIN_EVERY messages as a writer would. Compares
+//   per member  the line encoded again for each member (what broadcast() used to do)
+//   shared      one ChatMessage whose line is encoded once, every queue getting a
+//               duplicate of the same read-only bytes (what ChatServer does now)
+//
+// Timed in a warm JVM: the first half of the rounds are warm-up.
+//   ./gradlew fanoutBench --args="--rooms=10,100,1000"
+// Options (defaults): --rooms=10,100,1000 (members per room) --deliveries=2000000
+// (member copies per round) --rounds=6
+public class FanoutBench {
+
+    private static final int DRAIN_EVERY = 500; // below OutboundQueue.CAPACITY: nothing is dropped
+    private static final String SENDER = "alice";
+    private static final String TEXT = "Reminder: lab report for section 2B is due Friday at 5pm, room 402 ".repeat(2);
+
+    // --- Options ---
+    private int[] roomSizes = {10, 100, 1000};
+    private int deliveries = 2_000_000;
+    private int rounds = 6;
+
+    // A member without a connection: its lines stay queued until drain()
+    private static final class Member extends ChatConnection {
+        private final ByteBuffer[] batch = new ByteBuffer[DRAIN_EVERY];
+
+        Member(String name) {
+            clientName = name;
+        }
+
+        void drain() {
+            int count;
+            while ((count = outbound.peek(batch)) > 0) outbound.remove(count);
+        }
+
+        @Override
+        void startWriting() { }
+
+        @Override
+        void close() {
+            outbound.close();
+        }
+
+        @Override
+        InetAddress remoteAddress() {
+            return null;
+        }
+    }
+
+    public static void main(String[] args) {
+        FanoutBench bench = new FanoutBench();
+        for (String arg : args) bench.option(arg);
+        bench.run();
+    }
+
+    private void option(String arg) {
+        String[] parts = arg.replaceFirst("^--", "").split("=", 2);
+        if (parts.length < 2) throw new IllegalArgumentException("expected --name=value: " + arg);
+        String value = parts[1];
+        switch (parts[0]) {
+            case "rooms": roomSizes = Arrays.stream(value.split(",")).mapToInt(n -> Math.max(1, Integer.parseInt(n.trim()))).toArray(); break;
+            case "deliveries": deliveries = Math.max(1, Integer.parseInt(value)); break;
+            case "rounds": rounds = Math.max(1, Integer.parseInt(value)); break;
+            default: throw new IllegalArgumentException("unknown option " + arg);
+        }
+    }
+
+    private void run() {
+        System.out.printf(Locale.ROOT, "FanoutBench: %,d deliveries per round, %d rounds, %d-byte text, Java %s, %d CPUs%n",
+                deliveries, rounds, TEXT.length(), System.getProperty("java.version"), Runtime.getRuntime().availableProcessors());
+        System.out.println("us per message   per member     shared");
+        for (int size : roomSizes) {
+            Member[] room = new Member[size];
+            for (int i = 0; i < size; i++) room[i] = new Member("c" + i);
+            int messages = Math.max(1, deliveries / size);
+
+            for (int round = 0; round < rounds; round++) {
+                long t0 = System.nanoTime();
+                for (int m = 0; m < messages; m++) {
+                    for (Member member : room) {
+                        String line = SENDER + ": " + TEXT + "\n";
+                        member.send(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+                    }
+                    if (m % DRAIN_EVERY == DRAIN_EVERY - 1) drain(room);
+                }
+                drain(room);
+                long t1 = System.nanoTime();
+                for (int m = 0; m < messages; m++) {
+                    ChatMessage message = ChatMessage.message("room", m, SENDER, TEXT);
+                    for (Member member : room) member.send(message);
+                    if (m % DRAIN_EVERY == DRAIN_EVERY - 1) drain(room);
+                }
+                drain(room);
+                long t2 = System.nanoTime();
+                if (round < rounds / 2) continue; // warm-up
+                System.out.printf(Locale.ROOT, "  room %5d %12.1f %10.1f%n", size, (t1 - t0) / 1e3 / messages, (t2 - t1) / 1e3 / messages);
+            }
+        }
+    }
+
+    private static void drain(Member[] room) {
+        for (Member member : room) member.drain();
+    }
+}
@@ -0,0 +1,81 @@
+package com.university.server;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latency histogram in the style of HdrHistogram: every power-of-two range is split into
+// SUB_COUNT linear buckets, so any value from a nanosecond to hours lands in a bucket
+// within about 3% of it, in one fixed array of counters. Recording is an array index
+// and two atomic adds: no lock, no allocation, safe from any thread.
+class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BITS) * SUB_COUNT);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(index(value));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    // Values below SUB_COUNT have a bucket each; above, the top SUB_BITS + 1 bits pick it
+    static int index(long value) {
+        if (value < SUB_COUNT) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_COUNT + (int) ((value >>> shift) - SUB_COUNT);
+    }
+
+    // Largest value that falls into the bucket
+    static long highestValue(int index) {
+        int group = index >>> SUB_BITS;
+        int sub = index & (SUB_COUNT - 1);
+        if (group == 0) return sub;
+        return ((long) (SUB_COUNT + sub + 1) << (group - 1)) - 1;
+    }
+
+    // Column titles matching summary()
+    static String header() {
+        return String.format(Locale.ROOT, "%10s %10s %10s %10s %10s %10s %10s", "count", "mean", "p50", "p90", "p99", "p99.9", "max");
+    }
+
+    // Count, then mean, p50, p90, p99, p99.9 and max in microseconds, from a copy of the counters
+    String summary() {
+        long[] copy = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        if (total == 0) return String.format(Locale.ROOT, "%10d %10s %10s %10s %10s %10s %10s", 0, "-", "-", "-", "-", "-", "-");
+
+        long highest = max.get(); // a bucket's top may lie above anything recorded
+        return String.format(Locale.ROOT, "%10d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f", total,
+                micros(sum.sum() / total),
+                micros(Math.min(highest, percentile(copy, total, 0.50))),
+                micros(Math.min(highest, percentile(copy, total, 0.90))),
+                micros(Math.min(highest, percentile(copy, total, 0.99))),
+                micros(Math.min(highest, percentile(copy, total, 0.999))),
+                micros(highest));
+    }
+
+    private static long percentile(long[] counts, long total, double fraction) {
+        long wanted = Math.max(1, (long) Math.ceil(total * fraction));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= wanted) return highestValue(i);
+        }
+        return highestValue(counts.length - 1);
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+}
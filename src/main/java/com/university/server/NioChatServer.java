@@ -0,0 +1,307 @@
+package com.university.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Non-blocking chat engine: one acceptor plus a fixed set of event loops, each owning a
+// Selector and the connections registered with it. A client costs two small buffers
+// instead of a thread and its stack, so thousands of students need only a few threads.
+// Speaks the same protocols as the thread-per-client engine: binary frames after a
+// hello, or newline-terminated JOIN:/MSG: lines.
+class NioChatServer {
+
+    // Most queued lines handed to one gathering write
+    private static final int WRITE_BATCH = 64;
+
+    private final int port;
+    private final EventLoop[] loops;
+
+    NioChatServer(int port, int ioThreads) throws IOException {
+        this.port = port;
+        this.loops = new EventLoop[Math.max(1, ioThreads)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop("chat-io-" + i);
+        }
+    }
+
+    // Accepts forever on the calling thread, spreading connections over the loops
+    void run() throws IOException {
+        for (EventLoop loop : loops) loop.thread.start();
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(port));
+            int next = 0;
+            while (true) {
+                SocketChannel channel = server.accept();
+                ChatLog.info("New Client Connected!");
+                loops[next].register(channel);
+                next = (next + 1) % loops.length;
+            }
+        }
+    }
+
+    // ==========================
+    // EVENT LOOP (one thread, one selector)
+    // ==========================
+    private static class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        // Work handed over by other threads (new connections, write requests)
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(16 * 1024); // shared by this loop's clients
+        private final ByteBuffer[] writeBatch = new ByteBuffer[WRITE_BATCH];
+        // Connections with new output, flushed once at the end of the loop iteration so a
+        // burst of broadcasts leaves in one write per client instead of one per line
+        private final ArrayList<NioConnection> pendingFlush = new ArrayList<>();
+
+        EventLoop(String name) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, name);
+        }
+
+        void register(SocketChannel channel) {
+            execute(() -> {
+                try {
+                    channel.configureBlocking(false);
+                    channel.socket().setTcpNoDelay(true);
+                    NioConnection connection = new NioConnection(this, channel);
+                    connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                    ChatServer.onOpen(connection);
+                } catch (IOException e) {
+                    ChatLog.error("Could not register client: " + e.getMessage());
+                    try { channel.close(); } catch (IOException ignored) { }
+                }
+            });
+        }
+
+        // Runs the task on this loop's thread (directly if already on it)
+        void execute(Runnable task) {
+            if (Thread.currentThread() == thread) {
+                task.run();
+            } else {
+                tasks.add(task);
+                selector.wakeup();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    selector.select();
+                } catch (IOException e) {
+                    ChatLog.error("Selector failed: " + e.getMessage());
+                    return;
+                }
+
+                Runnable task;
+                while ((task = tasks.poll()) != null) task.run();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    NioConnection connection = (NioConnection) key.attachment();
+                    if (!key.isValid()) continue;
+
+                    if (key.isReadable()) connection.read(readBuffer);
+                    if (key.isValid() && key.isWritable()) connection.flush(writeBatch);
+                }
+
+                for (NioConnection connection : pendingFlush) {
+                    connection.flushScheduled = false;
+                    connection.flush(writeBatch);
+                }
+                pendingFlush.clear();
+            }
+        }
+
+        // Loop thread only
+        void flushLater(NioConnection connection) {
+            if (connection.flushScheduled) return;
+            connection.flushScheduled = true;
+            pendingFlush.add(connection);
+        }
+    }
+
+    // ==========================
+    // CONNECTION
+    // ==========================
+    private enum Inbound { UNKNOWN, LINES, HELLO, FRAMES }
+
+    private static class NioConnection extends ChatConnection {
+        private final EventLoop loop;
+        private final SocketChannel channel;
+        private SelectionKey key;
+
+        // --- Inbound state (loop thread only) ---
+        private Inbound inbound = Inbound.UNKNOWN;
+        private final ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+        private final ByteBuffer frameLength = ByteBuffer.allocate(4);
+        private ByteBuffer frameBody; // hello or frame being received, null between frames
+        private boolean closed = false; // loop thread only
+        private boolean flushScheduled = false; // loop thread only
+
+        NioConnection(EventLoop loop, SocketChannel channel) {
+            this.loop = loop;
+            this.channel = channel;
+        }
+
+        // --- Inbound ---
+        void read(ByteBuffer buffer) {
+            int count;
+            try {
+                buffer.clear();
+                count = channel.read(buffer);
+            } catch (IOException e) {
+                count = -1;
+            }
+            if (count < 0) {
+                if (outbound.isFinishing()) {
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ); // flush() closes when done
+                } else {
+                    close();
+                }
+                return;
+            }
+
+            buffer.flip();
+            if (inbound == Inbound.UNKNOWN && buffer.hasRemaining()) {
+                // The first byte tells the protocols apart (a hello starts with 0)
+                if (buffer.get(buffer.position()) == 0) {
+                    inbound = Inbound.HELLO;
+                    frameBody = ByteBuffer.allocate(ChatFrame.HELLO_LENGTH);
+                } else {
+                    inbound = Inbound.LINES;
+                }
+            }
+
+            if (inbound == Inbound.LINES) {
+                readLines(buffer);
+            } else {
+                readFrames(buffer);
+            }
+        }
+
+        // Splits the byte stream into lines
+        private void readLines(ByteBuffer buffer) {
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b == '\n') {
+                    byte[] bytes = partialLine.toByteArray();
+                    int length = bytes.length;
+                    if (length > 0 && bytes[length - 1] == '\r') length--;
+                    partialLine.reset();
+                    ChatServer.onLine(this, new String(bytes, 0, length, StandardCharsets.UTF_8));
+                    if (closed) return;
+                } else if (partialLine.size() < ChatServer.MAX_LINE) {
+                    partialLine.write(b);
+                } else {
+                    ChatLog.error("Line too long, dropping " + clientName);
+                    close();
+                    return;
+                }
+            }
+        }
+
+        // Reassembles length-prefixed frames, however the stream happens to be split
+        private void readFrames(ByteBuffer buffer) {
+            try {
+                while (buffer.hasRemaining()) {
+                    ByteBuffer target = frameBody != null ? frameBody : frameLength;
+                    int count = Math.min(buffer.remaining(), target.remaining());
+                    target.put(target.position(), buffer, buffer.position(), count);
+                    target.position(target.position() + count);
+                    buffer.position(buffer.position() + count);
+                    if (target.hasRemaining()) return;
+
+                    if (frameBody == null) {
+                        frameBody = ByteBuffer.allocate(ChatFrame.checkLength(frameLength.getInt(0)));
+                        frameLength.clear();
+                        continue;
+                    }
+
+                    ByteBuffer body = frameBody;
+                    frameBody = null;
+                    if (inbound == Inbound.HELLO) {
+                        if (!ChatServer.onHello(this, body.array())) {
+                            close();
+                            return;
+                        }
+                        inbound = Inbound.FRAMES;
+                    } else {
+                        body.flip();
+                        ChatServer.onFrame(this, ChatFrame.decode(body));
+                        if (closed) return;
+                    }
+                }
+            } catch (IOException e) {
+                ChatLog.error("Bad frame from " + clientName + ": " + e.getMessage());
+                close();
+            }
+        }
+
+        // --- Outbound (lines wait in the bounded OutboundQueue) ---
+        @Override
+        void startWriting() {
+            loop.execute(() -> loop.flushLater(this));
+        }
+
+        // Loop thread only. Hands queued lines to the socket in gathering writes of up to
+        // WRITE_BATCH lines; whatever the socket does not take waits for OP_WRITE.
+        void flush(ByteBuffer[] batch) {
+            if (closed) return;
+            try {
+                int count;
+                while ((count = outbound.peek(batch)) > 0) {
+                    channel.write(batch, 0, count);
+                    int written = 0;
+                    while (written < count && !batch[written].hasRemaining()) written++;
+                    outbound.remove(written);
+                    Arrays.fill(batch, 0, count, null);
+                    if (written < count) {
+                        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                }
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                if (outbound.isFinished()) close();
+            } catch (IOException | CancelledKeyException e) {
+                close();
+            }
+        }
+
+        @Override
+        InetAddress remoteAddress() {
+            return channel.socket().getInetAddress();
+        }
+
+        @Override
+        void close() {
+            loop.execute(() -> {
+                if (closed) return;
+                closed = true;
+                outbound.close();
+                if (key != null) key.cancel();
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+                ChatServer.onClose(this);
+            });
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package com.university.server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Bounded queue of encoded lines waiting to be written to one client.
+// Broadcasters only ever enqueue, so a slow reader never blocks the sender; when the
+// queue is full the slow-consumer policy decides what gives:
+//   drop-oldest  discard the oldest queued line to make room (default)
+//   disconnect   drop the client
+//   lagging      mark the client lagging and skip new lines until the queue is half
+//                empty again, then tell it how many it missed
+// Capacity and policy: -Dclasspilot.chat.maxQueued=1024 -Dclasspilot.chat.slowConsumer=drop-oldest
+//
+// A cluster link (ChatConnection.peer) is exempt from the policy: it carries every room
+// for all of the other node's members, whose mirrors could not tell a dropped line from
+// one never sent. It gets a deeper queue (-Dclasspilot.chat.maxQueuedPeer=65536), and
+// when even that fills it is closed, so the members behind it reconnect and resume
+// from the last message they got.
+//
+// Each line may carry the broadcast it belongs to, which is told when the line is
+// written or dropped (ChatMessage.settled) to time the room's fan-out.
+//
+// Uses a ReentrantLock rather than synchronized so a virtual writer thread waiting in
+// take() does not pin its carrier.
+class OutboundQueue {
+
+    enum Policy { DROP_OLDEST, DISCONNECT, LAGGING }
+
+    enum Offer {
+        QUEUED,       // added behind other lines
+        QUEUED_FIRST, // added to an empty queue: the writer may need a wake-up
+        DROPPED,      // not added (client lagging or queue closed)
+        OVERFLOW      // full under the disconnect policy: close the client
+    }
+
+    static final int CAPACITY = Math.max(2, Integer.getInteger("classpilot.chat.maxQueued", 1024));
+    static final Policy POLICY = parsePolicy(System.getProperty("classpilot.chat.slowConsumer", "drop-oldest"));
+    static final int PEER_CAPACITY = Math.max(CAPACITY, Integer.getInteger("classpilot.chat.maxQueuedPeer", 64 * 1024));
+    // How long a blocking writer waits for more lines before writing a batch (off by
+    // default: batching whatever queued during the previous write is usually enough)
+    static final long FLUSH_DELAY_NANOS = Long.getLong("classpilot.chat.flushDelayMicros", 0) * 1000;
+
+    // --- Server-wide counters ---
+    static final AtomicLong droppedLines = new AtomicLong();
+    static final AtomicLong slowDisconnects = new AtomicLong();
+    static final AtomicInteger laggingClients = new AtomicInteger();
+
+    private final ChatConnection owner;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final ArrayDeque<ByteBuffer> lines = new ArrayDeque<>();
+    private final ArrayDeque<ChatMessage> messages = new ArrayDeque<>(); // one per line, UNTRACKED if none
+    private boolean closed = false;
+    private boolean finishing = false; // close once the queue is empty
+    private int inFlight = 0; // lines handed out by peek() that the socket may be writing
+    private long waitingSince; // when the writer last made progress with lines still queued
+
+    // --- Per-client counters ---
+    private long dropped = 0;
+    private int maxDepth = 0;
+    private boolean lagging = false;
+    private long missedWhileLagging = 0;
+
+    // Lines handed out by take(), settled once written (writer thread only)
+    private ChatMessage[] taken = new ChatMessage[0];
+    private int takenCount = 0;
+
+    private static final ChatMessage UNTRACKED = ChatMessage.notice("", "");
+
+    OutboundQueue(ChatConnection owner) {
+        this.owner = owner;
+    }
+
+    private static Policy parsePolicy(String name) {
+        try {
+            return Policy.valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown slow-consumer policy '" + name + "', using drop-oldest");
+            return Policy.DROP_OLDEST;
+        }
+    }
+
+    // `message` is the live broadcast the line belongs to, or null
+    Offer offer(ByteBuffer line, ChatMessage message, String clientName) {
+        ChatMessage tracked = message != null ? message : UNTRACKED;
+        lock.lock();
+        try {
+            if (closed) {
+                settle(tracked, System.nanoTime());
+                return Offer.DROPPED;
+            }
+
+            if (lagging) {
+                missedWhileLagging++;
+                countDrop();
+                settle(tracked, System.nanoTime());
+                return Offer.DROPPED;
+            }
+
+            if (owner.peer) {
+                if (lines.size() < PEER_CAPACITY) return queue(line, tracked);
+                slowDisconnects.incrementAndGet();
+                ChatLog.error("Closing the link of cluster " + clientName + ", which is not keeping up ("
+                        + lines.size() + " lines queued); its members will resume");
+                settle(tracked, System.nanoTime());
+                return Offer.OVERFLOW;
+            }
+
+            if (lines.size() >= CAPACITY) {
+                switch (POLICY) {
+                    case DISCONNECT:
+                        slowDisconnects.incrementAndGet();
+                        ChatLog.info("Disconnecting slow client " + clientName + " (" + lines.size() + " lines queued)");
+                        settle(tracked, System.nanoTime());
+                        return Offer.OVERFLOW;
+                    case LAGGING:
+                        lagging = true;
+                        missedWhileLagging = 1;
+                        laggingClients.incrementAndGet();
+                        countDrop();
+                        ChatLog.info(clientName + " is lagging (" + lines.size() + " lines queued), skipping messages");
+                        settle(tracked, System.nanoTime());
+                        return Offer.DROPPED;
+                    default: // DROP_OLDEST (never a line being written: that would garble the stream)
+                        if (dropped == 0) {
+                            ChatLog.info(clientName + " is not keeping up, dropping its oldest messages");
+                        }
+                        countDrop();
+                        if (inFlight >= lines.size()) {
+                            settle(tracked, System.nanoTime());
+                            return Offer.DROPPED;
+                        }
+                        dropOldestWaiting();
+                        break;
+                }
+            }
+            return queue(line, tracked);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller holds lock
+    private Offer queue(ByteBuffer line, ChatMessage tracked) {
+        boolean wasEmpty = lines.isEmpty();
+        if (wasEmpty) waitingSince = System.nanoTime();
+        lines.add(line);
+        messages.add(tracked);
+        maxDepth = Math.max(maxDepth, lines.size());
+        if (wasEmpty) notEmpty.signal();
+        return wasEmpty ? Offer.QUEUED_FIRST : Offer.QUEUED;
+    }
+
+    private void countDrop() {
+        dropped++;
+        droppedLines.incrementAndGet();
+    }
+
+    // Removes the oldest line that is not in flight
+    private void dropOldestWaiting() {
+        if (inFlight == 0) {
+            lines.poll();
+            settle(messages.poll(), System.nanoTime());
+            return;
+        }
+        ArrayDeque<ByteBuffer> heldLines = new ArrayDeque<>(inFlight);
+        ArrayDeque<ChatMessage> heldMessages = new ArrayDeque<>(inFlight);
+        for (int i = 0; i < inFlight; i++) {
+            heldLines.addFirst(lines.poll());
+            heldMessages.addFirst(messages.poll());
+        }
+        lines.poll();
+        settle(messages.poll(), System.nanoTime());
+        for (ByteBuffer line : heldLines) lines.addFirst(line);
+        for (ChatMessage message : heldMessages) messages.addFirst(message);
+    }
+
+    private static void settle(ChatMessage message, long now) {
+        if (message != UNTRACKED) message.settled(now);
+    }
+
+    // --- Writer side ---
+    // Writers take lines in batches so one socket write (and one syscall) carries
+    // everything that queued up since the last one.
+
+    // Non-blocking writers: fills batch with the oldest lines without removing them and
+    // returns how many. They stay in flight until remove(), and are never dropped.
+    int peek(ByteBuffer[] batch) {
+        lock.lock();
+        try {
+            int count = 0;
+            for (ByteBuffer line : lines) {
+                if (count == batch.length) break;
+                batch[count++] = line;
+            }
+            inFlight = count;
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Removes the first count lines handed out by peek() once they are fully written;
+    // the rest of the batch stays in flight until the next peek()
+    void remove(int count) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                lines.poll();
+                settle(messages.poll(), now);
+            }
+            inFlight -= count;
+            if (count > 0) waitingSince = now;
+            ChatMetrics.linesOut.add(count);
+            catchUp();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Blocking writers: waits for at least one line, lingers up to FLUSH_DELAY_NANOS for
+    // more, then moves up to batch.length lines into batch. Returns how many, or -1 once
+    // the queue is closed (or finished and empty). Call written() after writing them.
+    int take(ByteBuffer[] batch) throws InterruptedException {
+        lock.lock();
+        try {
+            while (lines.isEmpty() && !closed && !finishing) notEmpty.await();
+            long linger = FLUSH_DELAY_NANOS;
+            while (linger > 0 && lines.size() < batch.length && !closed && !finishing) {
+                linger = notEmpty.awaitNanos(linger); // only close() / finish() signal a non-empty queue
+            }
+            if (closed || lines.isEmpty()) return -1;
+            if (taken.length < batch.length) taken = new ChatMessage[batch.length];
+            int count = 0;
+            while (count < batch.length && !lines.isEmpty()) {
+                taken[count] = messages.poll();
+                batch[count++] = lines.poll();
+            }
+            takenCount = count;
+            waitingSince = System.nanoTime();
+            catchUp();
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The lines of the last take() are written (or failed): settles their broadcasts
+    void written() {
+        long now = System.nanoTime();
+        for (int i = 0; i < takenCount; i++) {
+            settle(taken[i], now);
+            taken[i] = null;
+        }
+        ChatMetrics.linesOut.add(takenCount);
+        takenCount = 0;
+    }
+
+    // A lagging client that drained half its queue gets new lines again, led by a notice
+    private void catchUp() {
+        if (!lagging || lines.size() > CAPACITY / 2) return;
+
+        lagging = false;
+        laggingClients.decrementAndGet();
+        String notice = missedWhileLagging + " messages were skipped because your connection is slow.";
+        String room = owner.groupName != null ? owner.groupName : ""; // connection-wide for binary clients
+        lines.add(owner.encode(ChatMessage.notice(room, notice)).duplicate());
+        messages.add(UNTRACKED);
+        missedWhileLagging = 0;
+    }
+
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            lines.clear();
+            long now = System.nanoTime();
+            for (ChatMessage message : messages) settle(message, now);
+            messages.clear();
+            inFlight = 0;
+            if (lagging) {
+                lagging = false;
+                laggingClients.decrementAndGet();
+            }
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Lets the writer drain what is queued, then take() returns -1 and isFinished() is true
+    void finish() {
+        lock.lock();
+        try {
+            finishing = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isFinishing() {
+        lock.lock();
+        try {
+            return finishing;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isFinished() {
+        lock.lock();
+        try {
+            return finishing && lines.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isClosed() {
+        lock.lock();
+        try {
+            return closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // --- Per-client counters ---
+    int depth() {
+        lock.lock();
+        try {
+            return lines.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // How long queued lines have been waiting without the writer getting any of them
+    // out; 0 when nothing is queued. A peer that stopped reading stalls here for good.
+    long stalledNanos(long now) {
+        lock.lock();
+        try {
+            return lines.isEmpty() ? 0 : now - waitingSince;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int maxDepth() {
+        lock.lock();
+        try {
+            return maxDepth;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long dropped() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isLagging() {
+        lock.lock();
+        try {
+            return lagging;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
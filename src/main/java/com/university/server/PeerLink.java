@@ -0,0 +1,138 @@
+package com.university.server;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// This node's connection to another cluster node, carrying every room that node owns and
+// this one relays (see ChatCluster). It is an ordinary binary client connection that
+// starts with PEER instead of SUBSCRIBE: the owner then takes each MESSAGE's sender from
+// the frame, broadcasts NOTICE frames to the room, and sends back what any member gets.
+//
+// Frames are queued and written by the link's own thread, so relaying never blocks an
+// event loop or a client's reader on the other node; a second thread reads. If the
+// owner falls so far behind that the queue fills, or the connection fails, the link is
+// closed and ChatServer disconnects the members of its rooms here, whose clients then
+// reconnect and resume.
+class PeerLink {
+
+    private static final int CAPACITY = 64 * 1024; // queued frames
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+    // The owner pings a quiet link (ChatServer heartbeats); hearing nothing for this long means it is gone
+    private static final int SILENCE_TIMEOUT_MS = 75_000;
+
+    final String node;
+    // Rooms subscribed upstream over this link
+    final Set<String> rooms = ConcurrentHashMap.newKeySet();
+
+    private final LinkedBlockingQueue<ByteBuffer> queue = new LinkedBlockingQueue<>(CAPACITY);
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile Socket socket;
+
+    PeerLink(String node) {
+        this.node = node;
+        Thread writer = new Thread(this::writeLoop, "chat-peer-" + node);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    boolean isOpen() {
+        return !closed.get();
+    }
+
+    // Any thread; never blocks
+    void send(ChatFrame frame) {
+        if (closed.get()) return;
+        if (!queue.offer(frame.encode())) close(node + " is not keeping up, " + CAPACITY + " frames queued");
+    }
+
+    // ==========================
+    // WRITER (connects first)
+    // ==========================
+    private void writeLoop() {
+        try {
+            Socket connection = new Socket();
+            socket = connection;
+            if (closed.get()) return; // closed before there was a socket to close
+            connection.connect(new InetSocketAddress(ChatCluster.host(node), ChatCluster.port(node)), CONNECT_TIMEOUT_MS);
+            connection.setTcpNoDelay(true);
+            connection.setSoTimeout(CONNECT_TIMEOUT_MS);
+            OutputStream out = new BufferedOutputStream(connection.getOutputStream());
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+
+            write(out, ChatFrame.hello(ChatFrame.VERSION));
+            write(out, new ChatFrame(ChatFrame.PEER, 0, "", ChatCluster.SELF, ChatCluster.SECRET).encode());
+            out.flush();
+            byte[] hello = new byte[ChatFrame.HELLO_LENGTH];
+            in.readFully(hello);
+            if (ChatFrame.helloVersion(hello) < ChatFrame.VERSION) {
+                close(node + " answered with protocol version " + ChatFrame.helloVersion(hello));
+                return;
+            }
+            connection.setSoTimeout(SILENCE_TIMEOUT_MS);
+            ChatLog.info("Linked to cluster node " + node);
+
+            Thread reader = new Thread(() -> readLoop(in), "chat-peer-" + node + "-reader");
+            reader.setDaemon(true);
+            reader.start();
+
+            // Everything queued since the last write goes out in one flush
+            ArrayList<ByteBuffer> batch = new ArrayList<>();
+            while (!closed.get()) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                for (ByteBuffer frame : batch) write(out, frame);
+                batch.clear();
+                out.flush();
+            }
+        } catch (IOException e) {
+            close("link to " + node + " failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            close("link to " + node + " interrupted");
+        } finally {
+            ChatServer.onLinkLost(this); // here, not in close(): that may run inside a room update
+        }
+    }
+
+    private static void write(OutputStream out, ByteBuffer frame) throws IOException {
+        out.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+    }
+
+    private void readLoop(DataInputStream in) {
+        try {
+            ChatFrame frame;
+            while ((frame = ChatFrame.read(in)) != null) {
+                if (frame.type == ChatFrame.PING) {
+                    send(new ChatFrame(ChatFrame.PONG, frame.seq, "", ChatCluster.SELF, ""));
+                } else {
+                    ChatServer.onRelayed(frame);
+                }
+            }
+            close(node + " closed the link");
+        } catch (IOException e) {
+            close("link to " + node + " failed: " + e.getMessage());
+        }
+    }
+
+    // Closes once; the writer then disconnects the members of the link's rooms here
+    void close(String reason) {
+        if (!closed.compareAndSet(false, true)) return;
+
+        ChatLog.error("Lost cluster node " + node + " (" + reason + "), dropping the members of its " + rooms.size() + " rooms here");
+        queue.clear();
+        queue.offer(ByteBuffer.allocate(0)); // wakes the writer
+        Socket connection = socket;
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
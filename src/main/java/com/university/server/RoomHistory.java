@@ -0,0 +1,378 @@
+package com.university.server;
+
+import java.io.*;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Message history of one room: the recent messages in memory plus an append-only log on
+// disk that outlives server restarts. A client joining gets the last HISTORY_SIZE of
+// them replayed; a client resuming after a reconnect gets just the ones it missed, as
+// long as they are among the last RESUME_SIZE.
+//
+// In a cluster, a node keeps a mirror of each room that another node owns and its own
+// clients are in: the owner's messages in the owner's numbering, in memory only.
+//
+// The log is a directory of segments holding each message as a binary ChatFrame, whose
+// sequence number is the message's index in the room:
+//   chat-history/<room, URL-encoded (see dirName)>/<sequence number of its first message>.log
+// When the active segment passes SEGMENT_BYTES it is gzipped and a new one is started,
+// so months of traffic are mostly compressed files that are never read again; only the
+// newest segments are read, once, to refill the ring after a restart.
+//
+// Appends are write-behind like the database change logs: they only buffer, and a
+// background flusher writes the room's buffer within FLUSH_DELAY_MS. No fsync: a crash
+// may lose the last moments of chat, never the server's responsiveness. The room's
+// directory is only created with its first segment, so joining a room costs no disk.
+//
+// A room left empty for IDLE_MS is retired (retireWhenIdle): written out and dropped
+// from memory, to be opened from disk again by the next join.
+//
+// Settings: -Dclasspilot.chat.historyDir=chat-history -Dclasspilot.chat.historySize=50
+// -Dclasspilot.chat.resumeSize=500 -Dclasspilot.chat.historySegmentBytes=4194304
+// -Dclasspilot.chat.historySegments=0 (0 = keep all) -Dclasspilot.chat.roomIdleSeconds=60
+class RoomHistory {
+
+    static final File DIR = new File(System.getProperty("classpilot.chat.historyDir", "chat-history"));
+    static final int HISTORY_SIZE = Math.max(0, Integer.getInteger("classpilot.chat.historySize", 50));
+    static final int RESUME_SIZE = Math.max(HISTORY_SIZE, Integer.getInteger("classpilot.chat.resumeSize", 500));
+    static final long SEGMENT_BYTES = Math.max(1024, Long.getLong("classpilot.chat.historySegmentBytes", 4L << 20));
+    static final int MAX_SEGMENTS = Math.max(0, Integer.getInteger("classpilot.chat.historySegments", 0));
+    static final long IDLE_MS = Math.max(0, Long.getLong("classpilot.chat.roomIdleSeconds", 60)) * 1000;
+    private static final long FLUSH_DELAY_MS = 200;
+
+    private static final String ACTIVE = ".log";
+    private static final String ROTATED = ".log.gz";
+
+    // All rooms' log writes happen here, never on a broadcasting thread
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "chat-history");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Held by ChatServer across "record + read members" and "add member + replay", so a
+    // joining client gets every message exactly once: in the replay or live, in order.
+    final ReentrantLock lock = new ReentrantLock();
+
+    private final String roomName;
+
+    // --- In memory (guarded by lock) ---
+    private final ChatMessage[] ring = new ChatMessage[RESUME_SIZE]; // consecutive sequence numbers
+    private int ringStart = 0;
+    private int ringCount = 0;
+    private long nextSeq = 0; // sequence number of the room's next message
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long pendingFirstSeq;
+    private boolean flushScheduled = false;
+    private boolean retired = false;
+
+    // --- On disk (null when the directory is unusable: history is then memory-only) ---
+    private final File roomDir;
+    private final Object ioLock = new Object(); // flusher vs. shutdown flush
+    private File segment;      // active segment, guarded by ioLock
+    private long segmentBytes; // guarded by ioLock
+
+    private RoomHistory(String roomName, File roomDir) {
+        this.roomName = roomName;
+        this.roomDir = roomDir;
+    }
+
+    // Room names become directory names, and "", "." and ".." would not be a room's own
+    // directory: ChatServer refuses rooms called that
+    static boolean isValidName(String roomName) {
+        return !roomName.isEmpty() && !roomName.equals(".") && !roomName.equals("..");
+    }
+
+    // URL encoding, plus "." and "*" that it leaves as they are: the result has no path
+    // separators and no dots, so it can only name a directory directly inside DIR
+    static String dirName(String roomName) {
+        return URLEncoder.encode(roomName, StandardCharsets.UTF_8).replace(".", "%2E").replace("*", "%2A");
+    }
+
+    // Opens the room's log and refills the ring from its newest segments
+    static RoomHistory open(String roomName) {
+        File roomDir = new File(DIR, dirName(roomName));
+        try {
+            if (!isValidName(roomName) || !roomDir.getCanonicalFile().getParentFile().equals(DIR.getCanonicalFile())) {
+                System.err.println("Chat room name " + roomName + " is not a directory of its own, history is kept in memory only");
+                return new RoomHistory(roomName, null);
+            }
+        } catch (IOException e) {
+            System.err.println("Cannot resolve chat history directory " + roomDir + ", history of " + roomName + " is kept in memory only");
+            return new RoomHistory(roomName, null);
+        }
+
+        // Directory from before dots were encoded
+        File unescaped = new File(DIR, URLEncoder.encode(roomName, StandardCharsets.UTF_8));
+        if (!unescaped.equals(roomDir) && unescaped.isDirectory() && !roomDir.exists() && !unescaped.renameTo(roomDir)) {
+            System.err.println("Cannot rename chat history directory " + unescaped + " to " + roomDir);
+            roomDir = unescaped;
+        }
+
+        RoomHistory history = new RoomHistory(roomName, roomDir);
+        try {
+            history.load();
+        } catch (IOException e) {
+            System.err.println("Could not read chat history of " + roomName + ": " + e.getMessage());
+        }
+        return history;
+    }
+
+    // Memory-only copy of a room owned by another cluster node (see ChatCluster)
+    static RoomHistory mirror(String roomName) {
+        return new RoomHistory(roomName, null);
+    }
+
+    // ==========================
+    // RING + WRITE PATH (caller holds lock)
+    // ==========================
+    // Numbers, remembers and logs a new message of the room
+    ChatMessage append(String sender, String text) {
+        ChatMessage message = ChatMessage.message(roomName, nextSeq++, sender, text);
+        remember(message);
+        if (roomDir == null) return message;
+
+        if (pending.size() == 0) pendingFirstSeq = message.frame.seq;
+        byte[] bytes = new byte[message.frame().remaining()]; // shared buffer is read-only
+        message.frame().duplicate().get(bytes);
+        pending.writeBytes(bytes);
+        if (!flushScheduled) {
+            flushScheduled = true;
+            FLUSHER.schedule(this::flush, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+        return message;
+    }
+
+    // Queues the last HISTORY_SIZE messages, oldest first, for a client that just joined
+    void replayTo(ChatConnection client) {
+        for (int i = Math.max(0, ringCount - HISTORY_SIZE); i < ringCount; i++) {
+            client.send(ring[(ringStart + i) % ring.length]);
+        }
+    }
+
+    // Queues the messages from sequence number `from` on, for a client that saw the ones
+    // before. False if it missed more than the buffer still holds (it gets what there
+    // is), or claims messages this room never had (the log lost its tail in a crash:
+    // it gets the join replay).
+    boolean resumeTo(ChatConnection client, long from) {
+        if (from > nextSeq) {
+            replayTo(client);
+            return false;
+        }
+        long oldest = nextSeq - ringCount;
+        for (long seq = Math.max(from, oldest); seq < nextSeq; seq++) {
+            client.send(ring[(int) ((ringStart + seq - oldest) % ring.length)]);
+        }
+        return from >= oldest;
+    }
+
+    // Sequence number the room's next message will get
+    long nextSeq() {
+        return nextSeq;
+    }
+
+    // True once retireWhenIdle has let go of this history: the caller must unlock it and
+    // get the room's new one
+    boolean isRetired() {
+        return retired;
+    }
+
+    // --- Mirrors (caller holds lock) ---
+    // Takes a message relayed from the room's owner. False if it is already here (the
+    // owner's replay overlapping what the mirror has); a jump over messages that never
+    // arrived starts the ring over, so resumeTo never claims to have them.
+    boolean mirror(ChatMessage message) {
+        long seq = message.frame.seq;
+        if (seq < nextSeq) return false;
+        skipTo(seq);
+        nextSeq = seq + 1;
+        remember(message);
+        return true;
+    }
+
+    // The owner's next sequence number, from its SUBSCRIBE confirmation
+    void skipTo(long seq) {
+        if (seq <= nextSeq) return;
+        forget();
+        nextSeq = seq;
+    }
+
+    // Empties the mirror before it is subscribed again: it missed everything meanwhile
+    void forget() {
+        Arrays.fill(ring, null);
+        ringStart = 0;
+        ringCount = 0;
+        nextSeq = 0;
+    }
+
+    private void remember(ChatMessage message) {
+        if (ring.length == 0) return;
+        if (ringCount < ring.length) {
+            ring[(ringStart + ringCount++) % ring.length] = message;
+        } else {
+            ring[ringStart] = message;
+            ringStart = (ringStart + 1) % ring.length;
+        }
+    }
+
+    // ==========================
+    // RETIRING (empty rooms)
+    // ==========================
+    // Called when the room has emptied. After IDLE_MS, unless inUse says it has members
+    // again (checked under lock, where joins add them), writes out everything pending,
+    // marks this history retired and runs drop, which removes it from the server's maps.
+    void retireWhenIdle(BooleanSupplier inUse, Runnable drop) {
+        FLUSHER.schedule(() -> {
+            synchronized (ioLock) { // a flush of this room cannot overtake the one below
+                lock.lock();
+                try {
+                    if (retired || inUse.getAsBoolean()) return;
+                    retired = true;
+                } finally {
+                    lock.unlock();
+                }
+                flush(); // before drop: a reopened history reads the log
+                drop.run();
+            }
+        }, IDLE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // ==========================
+    // DISK
+    // ==========================
+    // Writes everything buffered since the last flush to the active segment
+    void flush() {
+        if (roomDir == null) return;
+        synchronized (ioLock) {
+            byte[] bytes;
+            long firstIndex;
+            lock.lock();
+            try {
+                flushScheduled = false;
+                if (pending.size() == 0) return;
+                bytes = pending.toByteArray();
+                pending = new ByteArrayOutputStream();
+                firstIndex = pendingFirstSeq;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                if (segment == null) startSegment(firstIndex);
+                try (FileOutputStream out = new FileOutputStream(segment, true)) {
+                    out.write(bytes);
+                }
+                segmentBytes += bytes.length;
+                if (segmentBytes >= SEGMENT_BYTES) rotate();
+            } catch (IOException e) {
+                System.err.println("Could not write chat history to " + roomDir + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Closes the active segment: compresses it and starts over with the next message
+    private void rotate() throws IOException {
+        File closed = segment;
+        File compressed = new File(roomDir, closed.getName() + ".gz");
+        try (InputStream in = new FileInputStream(closed);
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(compressed))) {
+            in.transferTo(out);
+        }
+        if (!closed.delete()) System.err.println("Could not remove rotated chat segment " + closed);
+        segment = null;
+        segmentBytes = 0;
+
+        if (MAX_SEGMENTS > 0) {
+            File[] segments = segments();
+            for (int i = 0; i < segments.length - MAX_SEGMENTS; i++) {
+                if (!segments[i].delete()) System.err.println("Could not remove old chat segment " + segments[i]);
+            }
+        }
+    }
+
+    private void startSegment(long firstIndex) throws IOException {
+        if (!roomDir.isDirectory() && !roomDir.mkdirs()) throw new IOException("cannot create " + roomDir);
+        segment = new File(roomDir, String.format("%012d", firstIndex) + ACTIVE);
+        segmentBytes = 0;
+    }
+
+    // Segments oldest first (names are zero-padded sequence numbers)
+    private File[] segments() {
+        File[] files = roomDir.listFiles((dir, name) -> name.endsWith(ACTIVE) || name.endsWith(ROTATED));
+        if (files == null) return new File[0];
+        Arrays.sort(files, (a, b) -> a.getName().compareTo(b.getName()));
+        return files;
+    }
+
+    // Refills the ring from the newest segments and reopens the active one for appending
+    private void load() throws IOException {
+        for (File file : segments()) {
+            // Crash between compressing and deleting: the .gz copy is complete
+            if (file.getName().endsWith(ACTIVE) && new File(roomDir, file.getName() + ".gz").exists()) {
+                if (!file.delete()) throw new IOException("cannot remove already rotated " + file);
+            }
+        }
+
+        File[] segments = segments();
+        if (segments.length == 0) return;
+
+        File last = segments[segments.length - 1];
+        if (last.getName().endsWith(ACTIVE)) {
+            segment = last;
+            segmentBytes = trimPartialFrame(last);
+        }
+
+        ArrayDeque<ChatFrame> newest = new ArrayDeque<>();
+        int wanted = Math.max(1, ring.length); // at least the last one, for the next sequence number
+        for (int i = segments.length - 1; i >= 0 && newest.size() < wanted; i--) {
+            ArrayDeque<ChatFrame> frames = readFrames(segments[i], wanted - newest.size());
+            while (!frames.isEmpty()) newest.addFirst(frames.pollLast());
+        }
+        nextSeq = Long.parseLong(last.getName().substring(0, last.getName().indexOf('.')));
+        if (!newest.isEmpty()) nextSeq = Math.max(nextSeq, newest.getLast().seq + 1);
+        while (newest.size() > ring.length) newest.poll();
+        for (ChatFrame frame : newest) remember(new ChatMessage(frame));
+    }
+
+    // The last `keep` complete frames of a segment
+    private static ArrayDeque<ChatFrame> readFrames(File file, int keep) throws IOException {
+        ArrayDeque<ChatFrame> frames = new ArrayDeque<>();
+        InputStream raw = new FileInputStream(file);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                file.getName().endsWith(ROTATED) ? new GZIPInputStream(raw) : raw))) {
+            ChatFrame frame;
+            while ((frame = ChatFrame.read(in)) != null) {
+                frames.add(frame);
+                if (frames.size() > keep) frames.poll();
+            }
+        } catch (EOFException e) {
+            // half-written last frame
+        }
+        return frames;
+    }
+
+    // Cuts off a frame left half-written by a crash, so new frames line up again
+    private static long trimPartialFrame(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long length = raf.length();
+            long complete = 0;
+            while (complete + 4 <= length) {
+                raf.seek(complete);
+                long next = complete + 4 + ChatFrame.checkLength(raf.readInt());
+                if (next > length) break;
+                complete = next;
+            }
+            raf.setLength(complete);
+            return complete;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.university.server;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+// Hashed timer wheel: a ring of buckets that one thread advances every tick. A timeout
+// goes into the bucket of its deadline tick (modulo the ring size), so scheduling or
+// cancelling one is O(1) and a tick only walks one bucket, however many connections are
+// being watched. Deadlines are rounded up to whole ticks, plenty for idle timeouts of
+// seconds, and far cheaper than a ScheduledExecutor's heap with thousands of clients.
+//
+// Tasks run on the timer thread and must be quick (queue a frame, close a socket).
+class TimerWheel {
+
+    // A scheduled task. cancel() only marks it; the bucket walk unlinks it later.
+    static final class Timeout {
+        private final Runnable task;
+        private final long deadlineTick;
+        private Timeout next; // bucket chain, timer thread only
+        private volatile boolean cancelled = false;
+
+        private Timeout(Runnable task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private final long tickNanos;
+    private final Timeout[] buckets; // timer thread only
+    // Timeouts scheduled since the last tick, from any thread
+    private final ConcurrentLinkedQueue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final long startNanos = System.nanoTime();
+    private long tick = 0; // last tick processed, timer thread only
+
+    TimerWheel(String name, long tickMillis, int buckets) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        this.buckets = new Timeout[Math.max(1, buckets)];
+        Thread thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    Timeout schedule(Runnable task, long delayNanos) {
+        long elapsed = System.nanoTime() - startNanos + Math.max(0, delayNanos);
+        Timeout timeout = new Timeout(task, (elapsed + tickNanos - 1) / tickNanos);
+        added.add(timeout);
+        return timeout;
+    }
+
+    private void run() {
+        while (true) {
+            long next = tick + 1;
+            long sleep = startNanos + next * tickNanos - System.nanoTime();
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+
+            Timeout timeout;
+            while ((timeout = added.poll()) != null) {
+                // Already due (scheduled during the last tick): runs now
+                int bucket = (int) (Math.max(timeout.deadlineTick, next) % buckets.length);
+                timeout.next = buckets[bucket];
+                buckets[bucket] = timeout;
+            }
+            expire(next);
+            tick = next; // behind schedule: the next ticks follow without sleeping
+        }
+    }
+
+    // Runs the bucket's due timeouts; the others are a whole revolution or more away
+    private void expire(long now) {
+        int bucket = (int) (now % buckets.length);
+        Timeout previous = null;
+        Timeout timeout = buckets[bucket];
+        while (timeout != null) {
+            Timeout following = timeout.next;
+            if (timeout.cancelled || timeout.deadlineTick <= now) {
+                if (previous == null) buckets[bucket] = following;
+                else previous.next = following;
+                timeout.next = null;
+                if (!timeout.cancelled) {
+                    try {
+                        timeout.task.run();
+                    } catch (RuntimeException e) {
+                        ChatLog.error("Timer task failed: " + e);
+                    }
+                }
+            } else {
+                previous = timeout;
+            }
+            timeout = following;
+        }
+    }
+}
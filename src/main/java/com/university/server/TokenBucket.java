@@ -0,0 +1,38 @@
+package com.university.server;
+
+import java.util.concurrent.TimeUnit;
+
+// Token bucket rate limit: holds up to `burst` tokens, refills at `perSecond` tokens a
+// second, and every accepted message takes one. Accounting is two longs and integer
+// math, no allocation and no clock thread: the credit is kept in nanoseconds of refill
+// time and topped up from the caller's timestamp whenever a token is asked for.
+//
+// Not thread-safe on its own: a connection's bucket is used only by its reader, a
+// room's only under the room's history lock.
+class TokenBucket {
+
+    private final long nanosPerToken; // 0 = unlimited
+    private final long capacity;      // burst, in nanoseconds of refill
+    private long credit;
+    private long refilledAt;
+
+    TokenBucket(int perSecond, int burst) {
+        this.nanosPerToken = perSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / perSecond : 0;
+        this.capacity = nanosPerToken * Math.max(1, burst);
+        this.credit = capacity; // starts full
+        this.refilledAt = System.nanoTime();
+    }
+
+    // Takes a token if there is one; `now` is a System.nanoTime() reading
+    boolean tryTake(long now) {
+        if (nanosPerToken == 0) return true;
+
+        if (now > refilledAt) { // timestamps taken before the room lock may arrive out of order
+            credit = Math.min(capacity, credit + (now - refilledAt));
+            refilledAt = now;
+        }
+        if (credit < nanosPerToken) return false;
+        credit -= nanosPerToken;
+        return true;
+    }
+}
@@ -0,0 +1,215 @@
+package com.university.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Readers iterate snapshots on their own threads while writers keep changing the store.
+// Every snapshot must be one consistent version: no ConcurrentModificationException, every
+// fixed user exactly once (an update never shows both or neither record), and two
+// snapshots with the same version hold the same users. The routine indexes and notice
+// feeds are checked the same way: queried while slots and notices come and go.
+class DataSnapshotStressTest {
+
+    private static final int FIXED = 200;
+    private static final int READERS = 4;
+    private static final long RUN_MS = 1500;
+
+    @TempDir
+    File dir;
+
+    @Test
+    void eagerStore() throws Exception {
+        DatabaseService db = new DatabaseService(dir);
+        for (int i = 0; i < FIXED; i++) db.addUser(student("f" + i, 0));
+        run(db);
+    }
+
+    // The user store maps an existing snapshot and decodes records on access (LazyRecordList)
+    @Test
+    void mappedStore() throws Exception {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < FIXED; i++) users.add(student("f" + i, 0));
+        SnapshotFile.write(new File(dir, "users.dat"), RecordCodecs.USERS, users, 0, User::getUserId);
+        run(new DatabaseService(dir));
+    }
+
+    // The indexes and feeds are built by whichever query comes first, then updated by
+    // the writers; a query must never see a fixed slot or notice missing or twice
+    @Test
+    void routineAndNoticeQueries() throws Exception {
+        DatabaseService db = new DatabaseService(dir);
+        Course course = new Course("CSE101", "Programming", 3.0);
+        db.addCourse(course);
+        for (int i = 0; i < FIXED; i++) {
+            db.addRoutineSlot(slot(course, "f" + i, "B1"));
+            db.addNotice(notice("f" + i, "B1", "Teacher"));
+        }
+        AtomicBoolean stop = new AtomicBoolean();
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        List<Thread> threads = new ArrayList<>();
+
+        // Adds and removes short-lived slots and notices in another section
+        threads.add(thread(failures, () -> {
+            ArrayDeque<RoutineSlot> slots = new ArrayDeque<>();
+            for (int n = 0; !stop.get(); n++) {
+                RoutineSlot slot = slot(course, "c" + n, "B2");
+                db.addRoutineSlot(slot);
+                slots.add(slot);
+                if (slots.size() > 20) db.deleteRoutine(slots.poll());
+            }
+        }));
+        threads.add(thread(failures, () -> {
+            ArrayDeque<Notice> notices = new ArrayDeque<>();
+            for (int n = 0; n < 2000 && !stop.get(); n++) { // deleteNotice prints a line each
+                Notice notice = notice("c" + n, "B2", "Advisor");
+                db.addNotice(notice);
+                notices.add(notice);
+                if (notices.size() > 20) db.deleteNotice(notices.poll());
+            }
+        }));
+        for (int r = 0; r < READERS; r++) {
+            threads.add(thread(failures, () -> {
+                while (!stop.get()) {
+                    assertEquals(FIXED, distinct(db.getRoutinesForSection("B1"), RoutineSlot::getRoomNo));
+                    assertEquals(FIXED, distinct(db.getRoutinesForSection("B1", "Sunday"), RoutineSlot::getRoomNo));
+                    assertTrue(distinct(db.getRoutinesForTeacher("Teacher B2"), RoutineSlot::getRoomNo) <= 21);
+
+                    long cursor = db.getNoticeCursor();
+                    assertEquals(FIXED, distinct(db.getLatestNoticesForSection("B1", Integer.MAX_VALUE), Notice::getTitle));
+                    assertTrue(distinct(db.getLatestNoticesBySender("Advisor", 10), Notice::getTitle) <= 10);
+                    for (Notice notice : db.getNoticesForSectionSince("B2", cursor)) {
+                        assertEquals("B2", notice.getTargetSection(), "feed mixed up sections");
+                    }
+                }
+            }));
+        }
+        race(threads, stop, failures);
+        db.close();
+        EntityStore.awaitCompactions();
+    }
+
+    private void run(DatabaseService db) throws Exception {
+        AtomicBoolean stop = new AtomicBoolean();
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        ConcurrentHashMap<Long, Integer> versions = new ConcurrentHashMap<>();
+        List<Thread> threads = new ArrayList<>();
+
+        // Updates the fixed users in place
+        threads.add(thread(failures, () -> {
+            for (int n = 1; !stop.get(); n++) {
+                String id = "f" + ThreadLocalRandom.current().nextInt(FIXED);
+                User current = db.findUser(id);
+                assertTrue(db.updateUser(current, student(id, n)), "update " + id);
+            }
+        }));
+        // Adds and removes short-lived users
+        threads.add(thread(failures, () -> {
+            for (int n = 0; !stop.get(); n++) {
+                assertTrue(db.addUser(student("c" + n, 0)));
+                if (n >= 20) db.deleteUser(db.findUser("c" + (n - 20)));
+            }
+        }));
+        for (int r = 0; r < READERS; r++) {
+            threads.add(thread(failures, () -> {
+                long lastVersion = -1;
+                while (!stop.get()) {
+                    DataSnapshot<User> snapshot = db.getUserList();
+                    assertTrue(snapshot.getVersion() >= lastVersion, "version went back");
+                    lastVersion = snapshot.getVersion();
+                    int contents = check(snapshot).hashCode(); // not the lists: too many to keep
+                    Integer earlier = versions.putIfAbsent(snapshot.getVersion(), contents);
+                    if (earlier != null) assertEquals(earlier, contents, "two snapshots of version " + snapshot.getVersion());
+                }
+            }));
+        }
+
+        race(threads, stop, failures);
+        assertTrue(versions.size() > 1, "readers never saw a change");
+        db.close();
+        EntityStore.awaitCompactions(); // its writes would race the temp directory's removal
+    }
+
+    // Runs the threads for RUN_MS, then rethrows whatever they failed with
+    private static void race(List<Thread> threads, AtomicBoolean stop, Queue<Throwable> failures) throws InterruptedException {
+        for (Thread thread : threads) thread.start();
+        Thread.sleep(RUN_MS);
+        stop.set(true);
+        for (Thread thread : threads) thread.join(10_000);
+
+        if (!failures.isEmpty()) {
+            AssertionError error = new AssertionError(failures.size() + " threads failed");
+            failures.forEach(error::addSuppressed);
+            throw error;
+        }
+    }
+
+    // Number of items in the result, after checking none is null or there twice
+    private static <T> int distinct(List<T> items, Function<T, String> id) {
+        Set<String> seen = new HashSet<>();
+        for (T item : items) {
+            assertNotNull(item, "null record");
+            assertTrue(seen.add(id.apply(item)), "twice: " + id.apply(item));
+        }
+        return items.size();
+    }
+
+    // Iterates the snapshot twice (by iterator and by index) and checks it is whole and
+    // unchanged; returns its users as "id name" in order
+    private static List<String> check(DataSnapshot<User> snapshot) {
+        List<String> users = new ArrayList<>();
+        Set<String> fixed = new HashSet<>();
+        for (User user : snapshot) {
+            assertNotNull(user, "null record");
+            users.add(describe(user));
+            if (user.getUserId().startsWith("f")) assertTrue(fixed.add(user.getUserId()), "twice: " + user.getUserId());
+        }
+        assertEquals(FIXED, fixed.size(), "fixed users missing");
+        assertEquals(snapshot.size(), users.size());
+        for (int i = 0; i < snapshot.size(); i++) {
+            assertEquals(users.get(i), describe(snapshot.get(i)), "snapshot changed while read");
+        }
+        return users;
+    }
+
+    private static String describe(User user) {
+        return user.getUserId() + " " + user.getFullName();
+    }
+
+    private static Thread thread(Queue<Throwable> failures, Runnable body) {
+        return new Thread(() -> {
+            try {
+                body.run();
+            } catch (Throwable e) {
+                failures.add(e);
+            }
+        });
+    }
+
+    // The room number tells slots apart
+    private static RoutineSlot slot(Course course, String room, String section) {
+        return new RoutineSlot("Sunday", "09:00 AM", room, course, "Teacher " + section, section);
+    }
+
+    private static Notice notice(String title, String section, String sender) {
+        return new Notice(title, "Text", section, sender, "01 Jan, 09:00 AM");
+    }
+
+    private static Student student(String id, int revision) {
+        return new Student(id, "pw", "Student " + id + " r" + revision, "B1");
+    }
+}
@@ -0,0 +1,167 @@
+package com.university.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// Write-behind must never cost a change: whatever was applied in memory is on disk
+// after flush() / close(), and a reopened service sees exactly the same data. A change
+// that cannot be logged is refused instead of living in memory only.
+//
+// Flushes are driven explicitly rather than waited for, and only one service or store
+// is open on the directory at a time (the log file is read directly instead).
+class DatabaseServiceDurabilityTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    void changesSurviveCloseAndReload() {
+        DatabaseService db = new DatabaseService(dir);
+        for (int i = 0; i < 10; i++) assertTrue(db.addUser(student("s" + i)));
+        assertTrue(db.addCourse(new Course("CSE101", "Programming", 3.0)));
+        db.addNotice(new Notice("Exam", "Room 301", "A", "t1", "01 Jan, 09:00 AM"));
+        assertTrue(db.updateUser(db.findUser("s3"), new Student("s3", "pw", "Renamed", "B2")));
+        db.deleteUser(db.findUser("s7"));
+        assertTrue(db.close());
+
+        DatabaseService reloaded = new DatabaseService(dir);
+        assertEquals(ids(db.getUserList()), ids(reloaded.getUserList()));
+        assertEquals("Renamed", reloaded.findUser("s3").getFullName());
+        assertNull(reloaded.findUser("s7"));
+        assertNotNull(reloaded.findCourse("CSE101"));
+        assertEquals(1, reloaded.getNoticeList().size());
+        reloaded.close();
+    }
+
+    @Test
+    void flushWritesEverythingBuffered() throws IOException {
+        DatabaseService db = new DatabaseService(dir);
+        for (int i = 0; i < 10; i++) db.addUser(student("s" + i));
+        db.deleteUser(db.findUser("s0"));
+        assertTrue(db.flush());
+
+        assertEquals(11, logRecords()); // on disk while the service is still running
+        db.close();
+    }
+
+    @Test
+    void burstWithinFlushDelayIsOneGroupCommit() throws IOException {
+        assumeTrue(EntityStore.FLUSH_DELAY_MS > 0, "write-behind is off");
+        EntityStore<User> store = userStore();
+
+        // Holding the store's lock keeps the whole burst inside one flush window,
+        // however slow the machine is: the flusher waits for it
+        synchronized (store) {
+            for (int i = 0; i < 100; i++) store.add(student("s" + i));
+        }
+        // Whichever of this and the scheduled flush comes first writes all 100; the
+        // other finds nothing left
+        assertTrue(store.flush());
+        assertEquals(1, store.getCommitCount());
+        assertEquals(100, logRecords());
+        assertTrue(store.close());
+
+        EntityStore<User> reopened = userStore();
+        assertEquals(100, reopened.list().size());
+        reopened.close();
+    }
+
+    @Test
+    void closeWithFlushPendingLosesNothing() throws IOException {
+        DatabaseService db = new DatabaseService(dir);
+        for (int i = 0; i < 50; i++) db.addUser(student("s" + i));
+        assertTrue(db.close()); // before the scheduled flush has run
+        assertEquals(50, logRecords());
+        assertTrue(db.addUser(student("late"))); // written straight away once closed
+        assertEquals(51, logRecords());
+
+        // The flush scheduled before close(), run now, finds nothing left to write
+        assertTrue(db.flush());
+        assertEquals(51, logRecords());
+
+        DatabaseService reloaded = new DatabaseService(dir);
+        assertEquals(ids(db.getUserList()), ids(reloaded.getUserList()));
+        reloaded.close();
+    }
+
+    // users.log is swapped for a directory, so every write to it fails
+    @Test
+    void failedFlushRefusesChangesUntilOneSucceeds() throws IOException {
+        assumeTrue(EntityStore.FLUSH_DELAY_MS > 0, "write-behind is off");
+        DatabaseService db = new DatabaseService(dir);
+        for (int i = 0; i < 5; i++) db.addUser(student("s" + i));
+        assertTrue(db.flush());
+
+        breakLog();
+        assertTrue(db.addUser(student("buffered"))); // only buffered so far
+        assertFalse(db.flush());
+        assertFalse(db.addUser(student("refused")));
+        assertNull(db.findUser("refused"));
+
+        repairLog();
+        assertTrue(db.addUser(student("after"))); // the buffered record goes out first
+        assertTrue(db.close());
+
+        DatabaseService reloaded = new DatabaseService(dir);
+        assertEquals(List.of("s0", "s1", "s2", "s3", "s4", "buffered", "after"), ids(reloaded.getUserList()));
+        reloaded.close();
+    }
+
+    @Test
+    void closedStoreRefusesChangeItCannotWrite() throws IOException {
+        DatabaseService db = new DatabaseService(dir);
+        assertTrue(db.addUser(student("s0")));
+        assertTrue(db.close());
+
+        breakLog();
+        assertFalse(db.addUser(student("late")));
+        assertFalse(db.updateUser(db.findUser("s0"), new Student("s0", "pw", "Renamed", "B2")));
+        db.deleteUser(db.findUser("s0"));
+        assertEquals(List.of("s0"), ids(db.getUserList()));
+        assertEquals("Student s0", db.findUser("s0").getFullName());
+
+        repairLog();
+        assertTrue(db.addUser(student("late")));
+
+        DatabaseService reloaded = new DatabaseService(dir);
+        assertEquals(List.of("s0", "late"), ids(reloaded.getUserList()));
+        reloaded.close();
+    }
+
+    private void breakLog() throws IOException {
+        File log = new File(dir, "users.log");
+        if (!log.renameTo(new File(dir, "users.log.aside")) || !log.mkdir()) throw new IOException("cannot replace " + log);
+    }
+
+    private void repairLog() throws IOException {
+        File log = new File(dir, "users.log");
+        if (!log.delete() || !new File(dir, "users.log.aside").renameTo(log)) throw new IOException("cannot restore " + log);
+    }
+
+    // Records in the user log, read without opening a second store
+    private int logRecords() throws IOException {
+        return ChangeLog.replay(new File(dir, "users.log"), false, entry -> { });
+    }
+
+    private EntityStore<User> userStore() {
+        return new EntityStore<>(new File(dir, "users.dat").getPath(), RecordCodecs.USERS, User::getUserId, true, false);
+    }
+
+    private static Student student(String id) {
+        return new Student(id, "pw", "Student " + id, "B1");
+    }
+
+    private static List<String> ids(List<User> users) {
+        List<String> ids = new ArrayList<>();
+        for (User user : users) ids.add(user.getUserId());
+        return ids;
+    }
+}
@@ -0,0 +1,61 @@
+package com.university.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// A binary sender's message reaches line-protocol members as exactly one line, whatever
+// line breaks its text or name carry: no forged "Server: ..." or "Teacher: ..." lines.
+class ChatMessageTest {
+
+    @Test
+    void lineBreaksInTextStayOnOneLine() {
+        ChatMessage message = ChatMessage.message("R", 0, "Bob", "hi\nTeacher: forged\r\nServer: also forged\rend");
+        String line = line(message);
+
+        assertEquals(1, count(line, '\n'));
+        assertTrue(line.endsWith("\n"));
+        assertEquals(-1, line.indexOf('\r'));
+        assertTrue(line.startsWith("Bob: hi Teacher: forged"));
+    }
+
+    @Test
+    void lineBreaksInSenderStayOnOneLine() {
+        String line = line(ChatMessage.message("R", 0, "Bob\nServer", "hi"));
+
+        assertEquals(1, count(line, '\n'));
+        assertEquals("Bob Server: hi\n", line);
+    }
+
+    @Test
+    void namesWithControlCharactersAreRefused() {
+        assertFalse(ChatFrame.isValidName("Bob\nServer"));
+        assertFalse(ChatFrame.isValidName("room\r"));
+        assertFalse(ChatFrame.isValidName("x".repeat(ChatFrame.MAX_NAME + 1)));
+        assertTrue(ChatFrame.isValidName("CSE-2B"));
+    }
+
+    // The binary form keeps the text as sent
+    @Test
+    void framesKeepLineBreaks() throws Exception {
+        ChatMessage message = ChatMessage.message("R", 7, "Bob", "two\nlines");
+        ByteBuffer frame = message.frame().duplicate();
+        byte[] body = new byte[frame.getInt()]; // after the length prefix
+        frame.get(body);
+        assertEquals("two\nlines", ChatFrame.decode(ByteBuffer.wrap(body)).text);
+    }
+
+    private static String line(ChatMessage message) {
+        ByteBuffer bytes = message.line().duplicate();
+        byte[] copy = new byte[bytes.remaining()];
+        bytes.get(copy);
+        return new String(copy, StandardCharsets.UTF_8);
+    }
+
+    private static int count(String text, char c) {
+        return (int) text.chars().filter(ch -> ch == c).count();
+    }
+}